@@ -0,0 +1,175 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A buffered writer of ASCII text straight to an {@code OutputStream},
+ * with number formatting that avoids building a {@code String}
+ * in the common cases.
+ */
+class AsciiWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final double[] POWERS_OF_TEN = new double[20];
+    private static final long[] LONG_POWERS_OF_TEN = new long[20];
+
+    static {
+        long power = 1;
+        for (int i = 0; i < LONG_POWERS_OF_TEN.length; ++i) {
+            LONG_POWERS_OF_TEN[i] = power;
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int size;
+
+    AsciiWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    AsciiWriter write(char c) throws IOException {
+        this.reserve(1);
+        this.buffer[this.size++] = (byte) c;
+        return this;
+    }
+
+    AsciiWriter write(String s) throws IOException {
+        for (int i = 0, len = s.length(); i < len; ++i) {
+            this.write(s.charAt(i));
+        }
+        return this;
+    }
+
+    AsciiWriter writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            return this.write(Long.toString(value));
+        }
+        this.reserve(20);
+        if (value < 0) {
+            this.buffer[this.size++] = '-';
+            value = -value;
+        }
+        this.putDigits(value, digitCount(value));
+        return this;
+    }
+
+    /**
+     * Writes the shortest decimal that reads back as {@code value}, in the
+     * notation of {@code Double.toString}: at least one fraction digit, and
+     * scientific notation outside [10^-3, 10^7), which is left to
+     * {@code Double.toString}.
+     */
+    AsciiWriter writeDouble(double value) throws IOException {
+        double abs = Math.abs(value);
+        long whole = (long) value;
+        if (whole == value && abs < 1e7 &&
+                (value != 0.0 || Double.doubleToRawLongBits(value) == 0L)) {
+            return this.writeLong(whole).write('.').write('0');
+        }
+        if (abs >= 1e-3 && abs < 1e7) {
+            // half the smaller gap to a neighbouring double, which the decimal must fall within
+            double halfUlp = Math.min(Math.ulp(abs), Math.ulp(Math.nextDown(abs)))
+                * (0.5 - 0x1p-40);
+            // more fraction digits never stop a decimal from reading back,
+            // so binary search for the fewest that do
+            int low = 1;
+            int high = POWERS_OF_TEN.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (nearestDecimal(abs, mid, halfUlp) != -1) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            long digits = nearestDecimal(abs, low, halfUlp);
+            if (digits >= 0) {
+                return this.writeDecimal(value < 0, digits, low);
+            }
+        }
+        return this.write(Double.toString(value));
+    }
+
+    /**
+     * @return the integer nearest to {@code abs} * 10^{@code scale} if it reads
+     *     back as {@code abs} once divided by 10^{@code scale}, -1 if it does not,
+     *     or -2 if it has more than 17 digits.
+     */
+    private static long nearestDecimal(double abs, int scale, double halfUlp) {
+        double power = POWERS_OF_TEN[scale];
+        // abs * 10^scale == hi + lo exactly, since 10^scale is exact
+        double hi = abs * power;
+        if (hi >= 1e17) {
+            return -2;
+        }
+        double lo = Math.fma(abs, power, -hi);
+        double rounded = Math.rint(hi);
+        double fraction = (hi - rounded) + lo;
+        double carry = Math.rint(fraction);
+        return Math.abs(fraction - carry) < halfUlp * power
+            ? (long) rounded + (long) carry : -1;
+    }
+
+    /**
+     * Writes {@code digits} / 10^{@code scale} with exactly {@code scale} fraction digits.
+     */
+    private AsciiWriter writeDecimal(boolean negative, long digits, int scale) throws IOException {
+        this.reserve(21);
+        if (negative) {
+            this.buffer[this.size++] = '-';
+        }
+        long unit = LONG_POWERS_OF_TEN[scale];
+        long whole = digits / unit;
+        this.putDigits(whole, digitCount(whole));
+        this.buffer[this.size++] = '.';
+        this.putDigits(digits - whole * unit, scale);
+        return this;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (count < LONG_POWERS_OF_TEN.length && value >= LONG_POWERS_OF_TEN[count]) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the last {@code count} decimal digits of a non-negative value,
+     * padded with leading zeros, into space already reserved.
+     */
+    private void putDigits(long value, int count) {
+        for (int i = this.size + count - 1; i >= this.size; --i) {
+            this.buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        this.size += count;
+    }
+
+    private void reserve(int bytes) throws IOException {
+        if (BUFFER_SIZE - this.size < bytes) {
+            this.flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        this.out.write(this.buffer, 0, this.size);
+        this.size = 0;
+    }
+
+    void flush() throws IOException {
+        this.flushBuffer();
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flushBuffer();
+        } finally {
+            this.out.close();
+        }
+    }
+}
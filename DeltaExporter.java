@@ -0,0 +1,151 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Exports successive versions of a mesh as an append-only patch log,
+ * writing only the faces that changed since the previous export.
+ * Each line is one change to a face, keyed by its id:
+ * {@code a <id> <polygon>} adds a face, {@code m <id> <polygon>} replaces
+ * the polygon of a face and {@code r <id>} removes a face, where the
+ * polygon is written as {@code x,y } pairs as in {@code mesh.out}.
+ * The first export, and the first after {@code reset}, truncates the log
+ * and adds every face.
+ * Changed faces are found by diffing the persistent storage of the
+ * exported mesh against the new one, so an export costs time
+ * proportional to the size of the change.
+ */
+class DeltaExporter {
+    private final Path path;
+    private Mesh exported;
+
+    DeltaExporter(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Makes the next export start the log over with every face.
+     */
+    void reset() {
+        this.exported = null;
+    }
+
+    void export(Mesh m) throws IOException {
+        Mesh previous = this.exported;
+        if (previous == null) {
+            try (AsciiWriter writer = new AsciiWriter(Files.newOutputStream(this.path))) {
+                for (int f = 0; f < m.faceCount(); ++f) {
+                    if (DeltaExporter.isExported(m, f)) {
+                        DeltaExporter.writeChange(writer, 'a', m, f);
+                    }
+                }
+            }
+            this.exported = m;
+            return;
+        }
+        IntList faces = new IntList();
+        BitSet seen = new BitSet();
+        m.forEachAffectedFace(previous, f -> {
+            if (!seen.get(f)) {
+                seen.set(f);
+                faces.add(f);
+            }
+        });
+        try (AsciiWriter writer = new AsciiWriter(Files.newOutputStream(this.path,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            for (int i = 0; i < faces.size(); ++i) {
+                int f = faces.get(i);
+                boolean before = DeltaExporter.isExported(previous, f);
+                boolean after = DeltaExporter.isExported(m, f);
+                if (before && !after) {
+                    writer.write("r ").writeLong(f).write('\n');
+                } else if (!before && after) {
+                    DeltaExporter.writeChange(writer, 'a', m, f);
+                } else if (before && !DeltaExporter.samePolygon(previous, m, f)) {
+                    DeltaExporter.writeChange(writer, 'm', m, f);
+                }
+            }
+        }
+        this.exported = m;
+    }
+
+    private static boolean isExported(Mesh m, int f) {
+        return m.isLiveFace(f) && m.faceHalfEdge(f) != -1;
+    }
+
+    private static void writeChange(AsciiWriter writer, char op, Mesh m, int f)
+            throws IOException {
+        writer.write(op).write(' ').writeLong(f).write(' ');
+        Visualiser.writeFace(m, f, writer);
+        writer.write('\n');
+    }
+
+    private static boolean samePolygon(Mesh a, Mesh b, int f) {
+        int startA = a.faceHalfEdge(f);
+        int startB = b.faceHalfEdge(f);
+        int currA = startA;
+        int currB = startB;
+        do {
+            Point p = a.point(a.vertex(currA));
+            Point q = b.point(b.vertex(currB));
+            if (p.getX() != q.getX() || p.getY() != q.getY()) {
+                return false;
+            }
+            currA = a.next(currA);
+            currB = b.next(currB);
+        } while (currA != startA && currB != startB);
+        return currA == startA && currB == startB;
+    }
+
+    /**
+     * Replays a patch log and writes the faces it ends with to {@code out}
+     * in the format of {@code mesh.out}, ordered by id.
+     */
+    static void compact(Path delta, Path out) throws IOException {
+        List<String> polygons = new ArrayList<String>();
+        try (BufferedReader reader = Files.newBufferedReader(delta, StandardCharsets.US_ASCII)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.length() < 3) {
+                    continue;
+                }
+                int end = line.indexOf(' ', 2);
+                int id;
+                try {
+                    id = Integer.parseInt(end == -1 ? line.substring(2) : line.substring(2, end));
+                } catch (NumberFormatException e) {
+                    id = -1;
+                }
+                if (id < 0) {
+                    throw new IOException("Invalid face id in '" + line + "'");
+                }
+                while (polygons.size() <= id) {
+                    polygons.add(null);
+                }
+                switch (line.charAt(0)) {
+                    case 'a':
+                    case 'm':
+                        polygons.set(id, end == -1 ? "" : line.substring(end + 1));
+                        break;
+                    case 'r':
+                        polygons.set(id, null);
+                        break;
+                    default:
+                        throw new IOException("Unknown change '" + line.charAt(0) + "'");
+                }
+            }
+        }
+        try (AsciiWriter writer = new AsciiWriter(Files.newOutputStream(out))) {
+            for (String polygon : polygons) {
+                if (polygon != null) {
+                    writer.write(polygon).write('\n');
+                }
+            }
+        }
+    }
+}
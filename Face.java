@@ -1,43 +1,73 @@
 import java.util.Optional;
 
+/**
+ * A view of the face with the given id in one particular {@code Mesh}.
+ */
 public class Face {
+    private final Mesh mesh;
     private final int id;
-    private Optional<HalfEdge> halfedge;
+    private final int generation;
 
-    Face(int id) {
+    Face(Mesh mesh, int id) {
+        this.mesh = mesh;
         this.id = id;
-        this.halfedge = Optional.<HalfEdge>empty();
+        this.generation = mesh.faceGeneration(id);
     }
 
-    private Face(int id, Optional<HalfEdge> halfedge) {
-        this.id = id;
-        this.halfedge = halfedge;
+    int getId() {
+        return this.id;
     }
 
-    void setHalfEdge(HalfEdge halfedge) {
-        this.halfedge = Optional.<HalfEdge>of(halfedge);
+    /**
+     * The generation of the slot this face is stored in. A mesh derived
+     * from this one may reuse the slot of a killed face for a new one,
+     * at a later generation; {@code Mesh.isLive} tells them apart.
+     */
+    int getGeneration() {
+        return this.generation;
     }
 
-    void removeHalfEdge() {
-        this.halfedge = Optional.<HalfEdge>empty();
+    public Optional<HalfEdge> getHalfEdge() {
+        int e = this.mesh.faceHalfEdge(this.id);
+        if (e == -1) {
+            return Optional.<HalfEdge>empty();
+        }
+        return Optional.<HalfEdge>of(new HalfEdge(this.mesh, e));
     }
 
-    Face copy() {
-        return new Face(this.id, this.halfedge);
+    /**
+     * @return the signed area of the face, positive if it winds counterclockwise.
+     *     Cached by the mesh, as are the perimeter and centroid.
+     */
+    public double area() {
+        return this.mesh.faceArea(this.id);
     }
 
-    int getId() {
-        return this.id;
+    public double perimeter() {
+        return this.mesh.facePerimeter(this.id);
     }
 
-    public Optional<HalfEdge> getHalfEdge() {
-        return this.halfedge;
+    public Point centroid() {
+        return this.mesh.faceCentroid(this.id);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Face)) {
+            return false;
+        }
+        Face other = (Face) obj;
+        return this.mesh == other.mesh && this.id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.id;
     }
 
     @Override
     public String toString() {
-        HalfEdge edge = new HalfEdge(-1);
         return String.format("Face %d: Edge %d", this.id,
-                this.halfedge.orElse(edge).getId());
+                this.mesh.faceHalfEdge(this.id));
     }
 }
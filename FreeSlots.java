@@ -0,0 +1,35 @@
+import java.util.function.IntPredicate;
+
+/**
+ * A persistent stack of the free slots of one kind of mesh element, each
+ * with the generation the next element stored in it gets. {@code null} is
+ * the empty stack, so pushing and popping never copy and meshes can share
+ * their stacks.
+ */
+final class FreeSlots {
+    final int slot;
+    final int generation;
+    final FreeSlots next;
+    // the number of slots from this one down, so stacks can be aligned without walking them
+    final int size;
+
+    FreeSlots(int slot, int generation, FreeSlots next) {
+        this.slot = slot;
+        this.generation = generation;
+        this.next = next;
+        this.size = next == null ? 1 : next.size + 1;
+    }
+
+    /**
+     * @return the dead slots among [0, n), lowest on top, each at generation 0.
+     */
+    static FreeSlots of(int n, IntPredicate live) {
+        FreeSlots free = null;
+        for (int i = n - 1; i >= 0; --i) {
+            if (!live.test(i)) {
+                free = new FreeSlots(i, 0, free);
+            }
+        }
+        return free;
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Static 2D vector math on raw {@code double} coordinates, so that
+ * geometric queries allocate nothing.
+ * Vectors are passed as (x, y) pairs.
+ */
+public final class Geometry {
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private Geometry() {
+    }
+
+    public static double dot(double ax, double ay, double bx, double by) {
+        return ax * bx + ay * by;
+    }
+
+    /**
+     * @return the z component of the cross product, positive if b is
+     *     counterclockwise from a.
+     */
+    public static double cross(double ax, double ay, double bx, double by) {
+        return ax * by - ay * bx;
+    }
+
+    /**
+     * @return twice the signed area of triangle abc, positive if it winds counterclockwise.
+     */
+    public static double orient(double ax, double ay, double bx, double by,
+            double cx, double cy) {
+        return cross(bx - ax, by - ay, cx - ax, cy - ay);
+    }
+
+    public static double lengthSquared(double dx, double dy) {
+        return dx * dx + dy * dy;
+    }
+
+    public static double length(double dx, double dy) {
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public static double distanceSquared(double x1, double y1, double x2, double y2) {
+        return lengthSquared(x2 - x1, y2 - y1);
+    }
+
+    public static double distance(double x1, double y1, double x2, double y2) {
+        return length(x2 - x1, y2 - y1);
+    }
+
+    public static double lerp(double a, double b, double ratio) {
+        return ratio * (b - a) + a;
+    }
+
+    /**
+     * @return the angle of a vector in radians, in [0, 2 pi).
+     */
+    public static double angle(double dx, double dy) {
+        double angle = Math.atan2(dy, dx);
+        if (angle < 0) {
+            angle += TWO_PI;
+        }
+        return angle;
+    }
+
+    /**
+     * A value in [0, 4) that increases with the angle of a vector in [0, 2 pi),
+     * without a call to {@code atan2}. Only useful for comparing angles.
+     */
+    public static double pseudoAngle(double dx, double dy) {
+        double p = dx / (Math.abs(dx) + Math.abs(dy));
+        if (Double.isNaN(p)) {
+            return 0.0;
+        }
+        return dy < 0 ? 3 + p : 1 - p;
+    }
+
+    /**
+     * Orders vectors by their angle in [0, 2 pi), as {@code Double.compare}
+     * would order their {@code angle}.
+     */
+    public static int compareAngles(double ax, double ay, double bx, double by) {
+        return Double.compare(pseudoAngle(ax, ay), pseudoAngle(bx, by));
+    }
+}
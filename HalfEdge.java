@@ -1,149 +1,165 @@
 import java.util.Optional;
 
+/**
+ * A view of the half-edge with the given id in one particular {@code Mesh}.
+ */
 public class HalfEdge {
+    private final Mesh mesh;
     private final int id;
-    private Optional<Vertex> v;
-    private Optional<Face> f;
-    private Optional<HalfEdge> twin;
-    private Optional<HalfEdge> next;
-    private Optional<HalfEdge> prev;
+    private final int generation;
 
-    HalfEdge(int id) {
-        this(id, Optional.<Vertex>empty(), Optional.<Face>empty(),
-                Optional.<HalfEdge>empty(), Optional.<HalfEdge>empty(), Optional.<HalfEdge>empty());
-    }
-
-    private HalfEdge(int id, Optional<Vertex> v, Optional<Face> f,
-            Optional<HalfEdge> twin, Optional<HalfEdge> next, Optional<HalfEdge> prev) {
+    HalfEdge(Mesh mesh, int id) {
+        this.mesh = mesh;
         this.id = id;
-        this.v = v;
-        this.f = f;
-        this.twin = twin;
-        this.next = next;
-        this.prev = prev;
-    }
-
-    void setVertex(Vertex v) {
-        this.v = Optional.<Vertex>of(v);
-    }
-
-    void setFace(Face f) {
-        this.f = Optional.<Face>of(f);
-    }
-
-    void setTwin(HalfEdge twin) {
-        this.twin = Optional.<HalfEdge>of(twin);
-    }
-
-    void setNext(HalfEdge next) {
-        this.next = Optional.<HalfEdge>of(next);
-    }
-
-    void setNext(Optional<HalfEdge> next) {
-        this.next = next;
-    }
-
-    void setPrev(HalfEdge prev) {
-        this.prev = Optional.<HalfEdge>of(prev);
-    }
-
-    void setPrev(Optional<HalfEdge> prev) {
-        this.prev = prev;
-    }
-
-    HalfEdge copy() {
-        return new HalfEdge(this.id, this.v, this.f,
-                this.twin, this.next, this.prev);
+        this.generation = mesh.halfEdgeGeneration(id);
     }
 
     public int getId() {
         return this.id;
     }
 
+    /**
+     * The generation of the slot this half-edge is stored in. A mesh derived
+     * from this one may reuse the slot of a killed half-edge for a new one,
+     * at a later generation; {@code Mesh.isLive} tells them apart.
+     */
+    int getGeneration() {
+        return this.generation;
+    }
+
     public Optional<Vertex> getVertex() {
-        return this.v;
+        int v = this.mesh.vertex(this.id);
+        return v == -1 ? Optional.<Vertex>empty()
+            : Optional.<Vertex>of(new Vertex(this.mesh, v));
     }
 
     public Optional<Face> getFace() {
-        return this.f;
+        int f = this.mesh.face(this.id);
+        return f == -1 ? Optional.<Face>empty()
+            : Optional.<Face>of(new Face(this.mesh, f));
     }
 
     public Optional<HalfEdge> getTwin() {
-        return this.twin;
+        return this.edge(this.mesh.twin(this.id));
     }
 
     public Optional<HalfEdge> getNext() {
-        return this.next;
+        return this.edge(this.mesh.next(this.id));
     }
 
     public Optional<HalfEdge> getPrev() {
-        return this.prev;
+        return this.edge(this.mesh.prev(this.id));
+    }
+
+    private Optional<HalfEdge> edge(int e) {
+        return e == -1 ? Optional.<HalfEdge>empty()
+            : Optional.<HalfEdge>of(new HalfEdge(this.mesh, e));
+    }
+
+    /**
+     * Returns -1 if the half-edge or its next half-edge has no vertex.
+     */
+    private int destination() {
+        int next = this.mesh.next(this.id);
+        return next == -1 ? -1 : this.mesh.vertex(next);
     }
 
+    /**
+     * Cached by the mesh; see {@code MeshGeometry}.
+     */
     public double angle() {
-        if (this.next.isEmpty() || this.v.isEmpty() ||
-                this.next.get().v.isEmpty()) {
-            return 2 * Math.PI;
-        }
-        Vertex v1 = this.v.get();
-        Vertex v2 = this.next.get().v.get();
-        return v2.translateAngle(v1.angle() + Math.PI,
-                v1.distanceFromOrigin()).angle() % (2 * Math.PI);
+        return this.mesh.edgeAngle(this.id);
     }
 
+    /**
+     * @return the counterclockwise angle from this half-edge to {@code other}
+     *     in [0, 2 pi), or 2 pi if either has no vertex at an end.
+     */
     public double angleBetween(HalfEdge other) {
-        if (this.next.isEmpty() || this.v.isEmpty() ||
-                this.next.get().v.isEmpty() ||
-                other.next.isEmpty() || other.v.isEmpty() ||
-                other.next.get().v.isEmpty()) {
+        if (this.mesh.vertex(this.id) == -1 || this.destination() == -1 ||
+                other.mesh.vertex(other.id) == -1 || other.destination() == -1) {
             return 2 * Math.PI;
         }
-        double angle = other.angle() - this.angle();
-        if (angle < 0) {
-            angle += 2 * Math.PI;
+        double ax = this.dx();
+        double ay = this.dy();
+        double bx = other.dx();
+        double by = other.dy();
+        return Geometry.angle(Geometry.dot(ax, ay, bx, by), Geometry.cross(ax, ay, bx, by));
+    }
+
+    /**
+     * Orders half-edges by {@code angle}, without computing it.
+     * Half-edges with no vertex at an end come last, as their angle is 2 pi.
+     */
+    public int compareAngle(HalfEdge other) {
+        boolean open = this.mesh.vertex(this.id) == -1 || this.destination() == -1;
+        boolean otherOpen = other.mesh.vertex(other.id) == -1 || other.destination() == -1;
+        if (open || otherOpen) {
+            return Boolean.compare(open, otherOpen);
         }
-        return angle;
+        return Geometry.compareAngles(this.dx(), this.dy(), other.dx(), other.dy());
     }
 
+    private double dx() {
+        return this.mesh.point(this.destination()).getX()
+            - this.mesh.point(this.mesh.vertex(this.id)).getX();
+    }
+
+    private double dy() {
+        return this.mesh.point(this.destination()).getY()
+            - this.mesh.point(this.mesh.vertex(this.id)).getY();
+    }
+
+    /**
+     * Cached by the mesh; see {@code MeshGeometry}.
+     */
     public double length() {
-        if (this.next.isEmpty() || this.v.isEmpty() ||
-                this.next.get().v.isEmpty()) {
-            return -1.0;
-        }
-        return this.v.get().distanceBetween(
-                this.next.get().v.get());
+        return this.mesh.edgeLength(this.id);
     }
 
     public Point midpoint() {
-        if (this.next.isEmpty() || this.next.get().v.isEmpty()) {
-            if (this.v.isEmpty()) {
-                return Point.origin();
-            }
-            return this.v.get().getPoint();
-        }
-        return this.v.get().midpoint(
-                this.next.get().v.get());
+        return this.lerp(0.5);
     }
 
     public Point lerp(double ratio) {
-        if (this.next.isEmpty() || this.next.get().v.isEmpty()) {
-            if (this.v.isEmpty()) {
+        int v = this.mesh.vertex(this.id);
+        int dest = this.destination();
+        if (dest == -1) {
+            if (v == -1) {
                 return Point.origin();
             }
-            return this.v.get().getPoint();
+            return this.mesh.point(v);
+        }
+        return this.mesh.point(v).lerp(this.mesh.point(dest), ratio);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof HalfEdge)) {
+            return false;
         }
-        return this.v.get().lerp(
-                this.next.get().v.get(), ratio);
+        HalfEdge other = (HalfEdge) obj;
+        return this.mesh == other.mesh && this.id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.id;
     }
 
     @Override
     public String toString() {
+        int v = this.mesh.vertex(this.id);
+        int f = this.mesh.face(this.id);
+        int twin = this.mesh.twin(this.id);
+        int next = this.mesh.next(this.id);
+        int prev = this.mesh.prev(this.id);
         String output = "Edge " + this.id + ": " +
-            "Vertex " + (this.v.isPresent() ? this.v.get().getId()  + "" : "") + ", " +
-            "Face " + (this.f.isPresent() ? this.f.get().getId() + "" : "") + ", " +
-            "Twin " + (this.twin.isPresent() ? this.twin.get().getId() + "" : "") + ", " +
-            "Next " + (this.next.isPresent() ? this.next.get().getId() + "" : "") + ", " +
-            "Prev " + (this.prev.isPresent() ? this.prev.get().getId() + "" : "");
+            "Vertex " + (v != -1 ? v + "" : "") + ", " +
+            "Face " + (f != -1 ? f + "" : "") + ", " +
+            "Twin " + (twin != -1 ? twin + "" : "") + ", " +
+            "Next " + (next != -1 ? next + "" : "") + ", " +
+            "Prev " + (prev != -1 ? prev + "" : "");
         return output;
     }
 }
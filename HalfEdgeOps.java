@@ -0,0 +1,483 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * The Euler operators and topology check of a half-edge mesh, written
+ * against {@code int} handles so that they run unchanged on any storage.
+ * -1 stands for an absent reference, such as the face of a boundary half-edge.
+ * Subclasses provide element access, creation and removal.
+ */
+abstract class HalfEdgeOps {
+    abstract int vertexCount();
+
+    abstract int faceCount();
+
+    abstract int halfEdgeCount();
+
+    abstract boolean isLiveVertex(int v);
+
+    abstract boolean isLiveFace(int f);
+
+    abstract boolean isLiveHalfEdge(int e);
+
+    abstract int next(int e);
+
+    abstract int prev(int e);
+
+    abstract int twin(int e);
+
+    abstract int vertex(int e);
+
+    abstract int face(int e);
+
+    abstract double x(int v);
+
+    abstract double y(int v);
+
+    abstract int vertexHalfEdge(int v);
+
+    abstract int faceHalfEdge(int f);
+
+    abstract void setNext(int e, int next);
+
+    abstract void setPrev(int e, int prev);
+
+    abstract void setTwin(int e, int twin);
+
+    abstract void setFace(int e, int f);
+
+    abstract void setVertexHalfEdge(int v, int e);
+
+    abstract void setFaceHalfEdge(int f, int e);
+
+    abstract void setVertexPosition(int v, double x, double y);
+
+    abstract int addVertex(double x, double y);
+
+    abstract int addFace();
+
+    abstract int addHalfEdge(int v, int f);
+
+    abstract void killVertex(int v);
+
+    abstract void killFace(int f);
+
+    abstract void killHalfEdge(int e);
+
+    /**
+     * Cursor over the {@code next} loop through {@code start}: returns the
+     * half-edge after {@code e}, or -1 once the loop is back at {@code start}.
+     * Loops written as
+     * {@code for (int e = start; e != -1; e = nextInLoop(start, e))}
+     * allocate nothing.
+     */
+    int nextInLoop(int start, int e) {
+        int n = this.next(e);
+        return n == start ? -1 : n;
+    }
+
+    /**
+     * Cursor over the outgoing half-edges of the vertex of {@code start},
+     * in the same style as {@code nextInLoop}.
+     */
+    int nextInStar(int start, int e) {
+        int n = this.twin(this.prev(e));
+        return n == start ? -1 : n;
+    }
+
+    public void forEachFaceHalfEdge(int f, IntConsumer action) {
+        int start = this.faceHalfEdge(f);
+        for (int e = start; e != -1; e = this.nextInLoop(start, e)) {
+            action.accept(e);
+        }
+    }
+
+    public void forEachVertexHalfEdge(int v, IntConsumer action) {
+        int start = this.vertexHalfEdge(v);
+        for (int e = start; e != -1; e = this.nextInStar(start, e)) {
+            action.accept(e);
+        }
+    }
+
+    public int faceSize(int f) {
+        int start = this.faceHalfEdge(f);
+        return start < 0 ? 0 : this.loopSize(start);
+    }
+
+    /**
+     * Counts the half-edges in the {@code next} loop through {@code start}.
+     */
+    int loopSize(int start) {
+        int count = 0;
+        for (int e = start; e != -1; e = this.nextInLoop(start, e)) {
+            ++count;
+        }
+        return count;
+    }
+
+    public int valence(int v) {
+        int start = this.vertexHalfEdge(v);
+        int count = 0;
+        for (int e = start; e != -1; e = this.nextInStar(start, e)) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Receives each broken invariant found by the checks below.
+     */
+    interface Reporter {
+        void report(ValidationReport.Kind kind, int id, int related);
+    }
+
+    private static final Reporter THROW = (kind, id, related) -> {
+        throw new Error(kind.getMessage());
+    };
+
+    public void check() {
+        for (int e = 0, len = this.halfEdgeCount(); e < len; ++e) {
+            if (this.isLiveHalfEdge(e)) {
+                this.checkHalfEdge(e);
+            }
+        }
+
+        for (int v = 0, len = this.vertexCount(); v < len; ++v) {
+            if (this.isLiveVertex(v)) {
+                this.checkVertex(v);
+            }
+        }
+
+        for (int f = 0, len = this.faceCount(); f < len; ++f) {
+            if (this.isLiveFace(f)) {
+                this.checkFace(f);
+            }
+        }
+    }
+
+    /**
+     * Checks the same invariants as {@code check}, splitting the half-edge,
+     * vertex and face ranges across the common fork-join pool, and collects
+     * every violation instead of throwing on the first.
+     * With {@code geometry} set, a topologically valid mesh is also checked
+     * for zero-length edges and for faces wound against the orientation
+     * of the mesh as a whole.
+     */
+    public ValidationReport validate(boolean geometry) {
+        List<ValidationReport.Violation> violations =
+            Collections.synchronizedList(new ArrayList<ValidationReport.Violation>());
+        Parallel.forRange(this.halfEdgeCount(), (from, to) -> {
+            Reporter reporter = HalfEdgeOps.collect(violations);
+            for (int e = from; e < to; ++e) {
+                if (this.isLiveHalfEdge(e)) {
+                    this.checkHalfEdge(e, reporter);
+                }
+            }
+        });
+        Parallel.forRange(this.vertexCount(), (from, to) -> {
+            Reporter reporter = HalfEdgeOps.collect(violations);
+            for (int v = from; v < to; ++v) {
+                if (this.isLiveVertex(v)) {
+                    this.checkVertex(v, reporter);
+                }
+            }
+        });
+        Parallel.forRange(this.faceCount(), (from, to) -> {
+            Reporter reporter = HalfEdgeOps.collect(violations);
+            for (int f = from; f < to; ++f) {
+                if (this.isLiveFace(f)) {
+                    this.checkFace(f, reporter);
+                }
+            }
+        });
+        if (geometry && violations.isEmpty()) {
+            this.checkGeometry(violations);
+        }
+        return new ValidationReport(violations);
+    }
+
+    private static Reporter collect(List<ValidationReport.Violation> violations) {
+        return (kind, id, related) ->
+            violations.add(new ValidationReport.Violation(kind, id, related));
+    }
+
+    private void checkGeometry(List<ValidationReport.Violation> violations) {
+        Parallel.forRange(this.halfEdgeCount(), (from, to) -> {
+            for (int e = from; e < to; ++e) {
+                if (!this.isLiveHalfEdge(e) || this.next(e) == -1) {
+                    continue;
+                }
+                int t = this.twin(e);
+                int v1 = this.vertex(e);
+                int v2 = this.vertex(this.next(e));
+                if ((t == -1 || e < t) && this.x(v1) == this.x(v2) && this.y(v1) == this.y(v2)) {
+                    violations.add(new ValidationReport.Violation(
+                                ValidationReport.Kind.DEGENERATE_EDGE, e, t));
+                }
+            }
+        });
+        double[] areas = new double[this.faceCount()];
+        Parallel.forRange(this.faceCount(), (from, to) -> {
+            for (int f = from; f < to; ++f) {
+                if (this.isLiveFace(f)) {
+                    areas[f] = this.signedArea(f);
+                }
+            }
+        });
+        double total = 0.0;
+        for (double area : areas) {
+            total += area;
+        }
+        double orientation = Math.signum(total);
+        Parallel.forRange(this.faceCount(), (from, to) -> {
+            for (int f = from; f < to; ++f) {
+                if (Math.signum(areas[f]) == -orientation && orientation != 0.0) {
+                    violations.add(new ValidationReport.Violation(
+                                ValidationReport.Kind.INVERTED_FACE, f, -1));
+                }
+            }
+        });
+    }
+
+    /**
+     * @return twice the signed area of a face, positive if it winds counterclockwise.
+     */
+    private double signedArea(int f) {
+        int start = this.faceHalfEdge(f);
+        if (start == -1) {
+            return 0.0;
+        }
+        double area = 0.0;
+        int e = start;
+        do {
+            int v1 = this.vertex(e);
+            int v2 = this.vertex(this.next(e));
+            area += Geometry.cross(this.x(v1), this.y(v1), this.x(v2), this.y(v2));
+            e = this.next(e);
+        } while (e != start);
+        return area;
+    }
+
+    void checkHalfEdge(int e) {
+        this.checkHalfEdge(e, THROW);
+    }
+
+    void checkVertex(int v) {
+        this.checkVertex(v, THROW);
+    }
+
+    void checkFace(int f) {
+        this.checkFace(f, THROW);
+    }
+
+    /**
+     * A reference to a killed half-edge is reported as an inconsistency.
+     */
+    void checkHalfEdge(int e, Reporter reporter) {
+        int t = this.twin(e);
+        int n = this.next(e);
+        int p = this.prev(e);
+        if (t != -1 && (!this.isLiveHalfEdge(t) || this.twin(t) != e)) {
+            reporter.report(ValidationReport.Kind.TWIN, e, t);
+        }
+        boolean liveNext = n != -1 && this.isLiveHalfEdge(n);
+        boolean livePrev = p != -1 && this.isLiveHalfEdge(p);
+        if (n != -1 && (!liveNext || this.face(e) != this.face(n))) {
+            reporter.report(ValidationReport.Kind.NEXT_FACE, e, n);
+        }
+        if (p != -1 && (!livePrev || this.face(e) != this.face(p))) {
+            reporter.report(ValidationReport.Kind.PREV_FACE, e, p);
+        }
+        if (livePrev && this.next(p) != e) {
+            reporter.report(ValidationReport.Kind.NEXT, e, p);
+        }
+        if (liveNext && this.prev(n) != e) {
+            reporter.report(ValidationReport.Kind.PREV, e, n);
+        }
+    }
+
+    void checkVertex(int v, Reporter reporter) {
+        int e = this.vertexHalfEdge(v);
+        if (e != -1 && (!this.isLiveHalfEdge(e) || this.vertex(e) != v)) {
+            reporter.report(ValidationReport.Kind.VERTEX_EDGE, v, e);
+        }
+    }
+
+    void checkFace(int f, Reporter reporter) {
+        int e = this.faceHalfEdge(f);
+        if (e != -1 && (!this.isLiveHalfEdge(e) || this.face(e) != f)) {
+            reporter.report(ValidationReport.Kind.FACE_EDGE, f, e);
+        }
+    }
+
+    /**
+     * @return whether {@code v} was moved.
+     */
+    public boolean moveVertex(int v, double x, double y) {
+        if (!this.isLiveVertex(v)) {
+            return false;
+        }
+        this.setVertexPosition(v, x, y);
+        return true;
+    }
+
+    /**
+     * @return the new vertex, or -1 if {@code e} is not a live half-edge.
+     */
+    public int splitEdgeMakeVert(int e, double x, double y) {
+        if (!this.isLiveHalfEdge(e)) {
+            return -1;
+        }
+        int newVertex = this.addVertex(x, y);
+        int v1Out = e;
+        int v2Out = this.twin(v1Out);
+        int v2In = this.addHalfEdge(newVertex, this.face(v1Out));
+        int v1In = this.addHalfEdge(newVertex, this.face(v2Out));
+
+        this.setVertexHalfEdge(newVertex, v2In);
+        this.setPrev(this.next(v1Out), v2In);
+        this.setNext(v2In, this.next(v1Out));
+        this.setPrev(this.next(v2Out), v1In);
+        this.setNext(v1In, this.next(v2Out));
+        this.setNext(v1Out, v2In);
+        this.setTwin(v1Out, v1In);
+        this.setNext(v2Out, v1In);
+        this.setTwin(v2Out, v2In);
+        this.setPrev(v2In, v1Out);
+        this.setTwin(v2In, v2Out);
+        this.setPrev(v1In, v2Out);
+        this.setTwin(v1In, v1Out);
+        return newVertex;
+    }
+
+    /**
+     * @return whether {@code v} was removed. Only vertices of valence 2
+     *         whose face has more than 3 sides can be removed.
+     */
+    public boolean joinEdgeKillVert(int v) {
+        if (!this.isLiveVertex(v) || this.vertexHalfEdge(v) == -1) {
+            return false;
+        }
+        if (this.valence(v) > 2 || this.loopSize(this.vertexHalfEdge(v)) <= 3) {
+            return false;
+        }
+
+        int v2Out = this.vertexHalfEdge(v);
+        int v2In = this.twin(v2Out);
+        int v1Out = this.prev(v2Out);
+        int v1In = this.twin(v1Out);
+
+        this.setNext(v1Out, this.next(v2Out));
+        this.setPrev(this.next(v2Out), v1Out);
+        this.setNext(v2In, this.next(v1In));
+        this.setPrev(this.next(v1In), v2In);
+        this.setTwin(v1Out, v2In);
+        this.setTwin(v2In, v1Out);
+        if (this.face(v1Out) != -1) {
+            this.setFaceHalfEdge(this.face(v1Out), v1Out);
+        }
+        if (this.face(v2In) != -1) {
+            this.setFaceHalfEdge(this.face(v2In), v2In);
+        }
+
+        this.killVertex(v);
+        this.killHalfEdge(v2Out);
+        this.killHalfEdge(v1In);
+        return true;
+    }
+
+    /**
+     * @return the new face, or -1 if the face has 3 or fewer sides
+     *         or either vertex is not on it.
+     */
+    public int splitFaceMakeEdge(int f, int v1, int v2) {
+        if (!this.isLiveFace(f) || !this.isLiveVertex(v1) || !this.isLiveVertex(v2)) {
+            return -1;
+        }
+        if (this.faceSize(f) <= 3) {
+            return -1;
+        }
+        int v1Out = -1;
+        int v2Out = -1;
+        int start = this.faceHalfEdge(f);
+        for (int e = start; e != -1; e = this.nextInLoop(start, e)) {
+            if (this.vertex(e) == v1) {
+                v1Out = e;
+            } else if (this.vertex(e) == v2) {
+                v2Out = e;
+            }
+        }
+        if (v1Out == -1 || v2Out == -1) {
+            return -1;
+        }
+        int newFace = this.addFace();
+        int newEdge1 = this.addHalfEdge(v1, f);
+        int newEdge2 = this.addHalfEdge(v2, newFace);
+        int v1In = this.prev(v1Out);
+        int v2In = this.prev(v2Out);
+
+        this.setFaceHalfEdge(f, newEdge1);
+        this.setFaceHalfEdge(newFace, newEdge2);
+
+        this.setNext(v1In, newEdge1);
+        this.setPrev(v1Out, newEdge2);
+        this.setNext(v2In, newEdge2);
+        this.setPrev(v2Out, newEdge1);
+        this.setPrev(newEdge1, v1In);
+        this.setNext(newEdge1, v2Out);
+        this.setTwin(newEdge1, newEdge2);
+        this.setPrev(newEdge2, v2In);
+        this.setNext(newEdge2, v1Out);
+        this.setTwin(newEdge2, newEdge1);
+
+        for (int e = v1Out; e != -1; e = this.nextInLoop(v1Out, e)) {
+            this.setFace(e, newFace);
+        }
+        return newFace;
+    }
+
+    /**
+     * @return whether the faces on either side of {@code e} were merged.
+     *         Faces that share more than one edge are not merged.
+     */
+    public boolean joinFaceKillEdge(int e) {
+        if (!this.isLiveHalfEdge(e)) {
+            return false;
+        }
+        int v1Out = e;
+        int v2Out = this.twin(v1Out);
+        int f1 = this.face(v1Out);
+        int f2 = this.face(v2Out);
+        if (f1 == -1 || f2 == -1) {
+            return false;
+        }
+        int count = 0;
+        int start = this.faceHalfEdge(f1);
+        for (int curr = start; curr != -1; curr = this.nextInLoop(start, curr)) {
+            if (this.face(this.twin(curr)) == f2) {
+                ++count;
+            }
+        }
+        if (count > 1) {
+            return false;
+        }
+        int v1 = this.vertex(v1Out);
+        int v2 = this.vertex(v2Out);
+
+        this.forEachFaceHalfEdge(f2, curr -> this.setFace(curr, f1));
+        this.setNext(this.prev(v1Out), this.next(v2Out));
+        this.setPrev(this.next(v1Out), this.prev(v2Out));
+        this.setNext(this.prev(v2Out), this.next(v1Out));
+        this.setPrev(this.next(v2Out), this.prev(v1Out));
+        this.setFaceHalfEdge(f1, this.next(v1Out));
+        this.setVertexHalfEdge(v1, this.next(v2Out));
+        this.setVertexHalfEdge(v2, this.next(v1Out));
+
+        this.killFace(f2);
+        this.killHalfEdge(v1Out);
+        this.killHalfEdge(v2Out);
+        return true;
+    }
+}
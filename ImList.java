@@ -1,70 +1,370 @@
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
 
 /**
  * From
  * @author cs2030
- * An immutable implementation of {@code ArrayList}. 
+ * An immutable implementation of {@code ArrayList}.
+ * Backed by a persistent 32-way trie with a tail buffer, so that
+ * {@code add}, {@code set} and removing the last element take
+ * O(log32 n) and share all untouched nodes with the original list.
  */
 
 public class ImList<E> implements Iterable<E> {
-    private final ArrayList<E> elems;
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final Object[] EMPTY_TAIL = new Object[0];
+    // header and four fields
+    private static final long LIST_BYTES = 32;
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
 
     public ImList() {
-        this.elems = new ArrayList<E>();
+        this(0, BITS, EMPTY_NODE, EMPTY_TAIL);
     }
 
     public ImList(List<? extends E> list) {
-        this.elems = new ArrayList<E>(list);
+        this(ImList.<E>fromArray(list.toArray()));
+    }
+
+    private ImList(ImList<E> other) {
+        this(other.size, other.shift, other.root, other.tail);
+    }
+
+    private ImList(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Builds a list from an array bottom-up in O(n),
+     * instead of pushing each element through the trie.
+     */
+    private static <E> ImList<E> fromArray(Object[] elems) {
+        int n = elems.length;
+        if (n == 0) {
+            return new ImList<E>();
+        }
+        int tailOffset = ((n - 1) >>> BITS) << BITS;
+        Object[] tail = Arrays.copyOfRange(elems, tailOffset, n);
+        Object[][] nodes = new Object[tailOffset >>> BITS][];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = Arrays.copyOfRange(elems, i << BITS, (i + 1) << BITS);
+        }
+        int shift = BITS;
+        while (nodes.length > WIDTH) {
+            Object[][] parents = new Object[(nodes.length + MASK) >>> BITS][];
+            for (int i = 0; i < parents.length; ++i) {
+                parents[i] = new Object[WIDTH];
+                int from = i << BITS;
+                System.arraycopy(nodes, from, parents[i], 0,
+                        Math.min(WIDTH, nodes.length - from));
+            }
+            nodes = parents;
+            shift += BITS;
+        }
+        Object[] root = new Object[WIDTH];
+        System.arraycopy(nodes, 0, root, 0, nodes.length);
+        return new ImList<E>(n, shift, root, tail);
+    }
+
+    private int tailOffset() {
+        return this.size < WIDTH ? 0 : ((this.size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= this.tailOffset()) {
+            return this.tail;
+        }
+        Object[] node = this.root;
+        for (int level = this.shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
     }
 
     public ImList<E> add(E elem) {
-        ImList<E> newList = new ImList<E>(this.elems);
-        newList.elems.add(elem);
-        return newList;
+        if (this.size - this.tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(this.tail, this.tail.length + 1);
+            newTail[this.tail.length] = elem;
+            return new ImList<E>(this.size + 1, this.shift, this.root, newTail);
+        }
+        Object[] newRoot;
+        int newShift = this.shift;
+        if ((this.size >>> BITS) > (1 << this.shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = this.root;
+            newRoot[1] = newPath(this.shift, this.tail);
+            newShift += BITS;
+        } else {
+            newRoot = this.pushTail(this.shift, this.root, this.tail);
+        }
+        return new ImList<E>(this.size + 1, newShift, newRoot, new Object[] { elem });
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int subIndex = ((this.size - 1) >>> level) & MASK;
+        Object[] node = parent.clone();
+        if (level == BITS) {
+            node[subIndex] = tailNode;
+        } else {
+            Object[] child = (Object[]) parent[subIndex];
+            node[subIndex] = child != null
+                ? this.pushTail(level - BITS, child, tailNode)
+                : newPath(level - BITS, tailNode);
+        }
+        return node;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
     }
 
     public ImList<E> addAll(List<? extends E> list) {
-        ImList<E> newList = new ImList<E>(this.elems);
-        newList.elems.addAll(list);
+        ImList<E> newList = this;
+        for (E elem : list) {
+            newList = newList.add(elem);
+        }
         return newList;
     }
 
+    @SuppressWarnings("unchecked")
     public E get(int index) {
-        return this.elems.get(index);
+        this.checkIndex(index);
+        return (E) this.leafFor(index)[index & MASK];
     }
 
     public int indexOf(Object obj) {
-        return this.elems.indexOf(obj);
+        for (int i = 0; i < this.size; i += WIDTH) {
+            Object[] leaf = this.leafFor(i);
+            for (int j = 0, len = Math.min(WIDTH, this.size - i); j < len; ++j) {
+                if (obj == null ? leaf[j] == null : obj.equals(leaf[j])) {
+                    return i + j;
+                }
+            }
+        }
+        return -1;
     }
 
     public boolean isEmpty() {
-        return this.elems.isEmpty();
+        return this.size == 0;
     }
 
     public Iterator<E> iterator() {
-        return this.elems.iterator();
+        return new Iterator<E>() {
+            private int index = 0;
+            private Object[] leaf = ImList.this.tail;
+
+            public boolean hasNext() {
+                return this.index < ImList.this.size;
+            }
+
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if ((this.index & MASK) == 0) {
+                    this.leaf = ImList.this.leafFor(this.index);
+                }
+                return (E) this.leaf[this.index++ & MASK];
+            }
+        };
     }
 
+    /**
+     * Removing the last element is O(log32 n); removing any other
+     * element shifts the remainder and rebuilds the trie in O(n).
+     */
     public ImList<E> remove(int index) {
-        ImList<E> newList = new ImList<E>(this.elems);
-        newList.elems.remove(index);
-        return newList;
+        this.checkIndex(index);
+        if (index == this.size - 1) {
+            return this.removeLast();
+        }
+        Object[] elems = new Object[this.size - 1];
+        int k = 0;
+        for (int i = 0; i < this.size; i += WIDTH) {
+            Object[] leaf = this.leafFor(i);
+            for (int j = 0, len = Math.min(WIDTH, this.size - i); j < len; ++j) {
+                if (i + j != index) {
+                    elems[k++] = leaf[j];
+                }
+            }
+        }
+        return ImList.<E>fromArray(elems);
+    }
+
+    private ImList<E> removeLast() {
+        if (this.size == 1) {
+            return new ImList<E>();
+        }
+        if (this.size - this.tailOffset() > 1) {
+            return new ImList<E>(this.size - 1, this.shift, this.root,
+                    Arrays.copyOf(this.tail, this.tail.length - 1));
+        }
+        Object[] newTail = this.leafFor(this.size - 2);
+        Object[] newRoot = this.popTail(this.shift, this.root);
+        int newShift = this.shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (this.shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new ImList<E>(this.size - 1, newShift, newRoot, newTail);
+    }
+
+    private Object[] popTail(int level, Object[] node) {
+        int subIndex = ((this.size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] child = this.popTail(level - BITS, (Object[]) node[subIndex]);
+            if (child == null && subIndex == 0) {
+                return null;
+            }
+            Object[] newNode = node.clone();
+            newNode[subIndex] = child;
+            return newNode;
+        } else if (subIndex == 0) {
+            return null;
+        }
+        Object[] newNode = node.clone();
+        newNode[subIndex] = null;
+        return newNode;
     }
 
     public ImList<E> set(int index, E elem) {
-        ImList<E> newList = new ImList<E>(this.elems);
-        newList.elems.set(index, elem);
-        return newList;
+        this.checkIndex(index);
+        if (index >= this.tailOffset()) {
+            Object[] newTail = this.tail.clone();
+            newTail[index & MASK] = elem;
+            return new ImList<E>(this.size, this.shift, this.root, newTail);
+        }
+        return new ImList<E>(this.size, this.shift,
+                assoc(this.shift, this.root, index, elem), this.tail);
+    }
+
+    private static Object[] assoc(int level, Object[] node, int index, Object elem) {
+        Object[] newNode = node.clone();
+        if (level == 0) {
+            newNode[index & MASK] = elem;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            newNode[subIndex] = assoc(level - BITS, (Object[]) node[subIndex], index, elem);
+        }
+        return newNode;
     }
 
     public int size() {
-        return this.elems.size();
+        return this.size;
+    }
+
+    /**
+     * Visits every index at which this list and {@code other} hold different
+     * elements, compared by reference, including indices only one of them has.
+     * Subtrees the two lists share are skipped, so comparing a list with one
+     * derived from it by k updates takes O(k log32 n).
+     */
+    void forEachDifference(ImList<E> other, IntConsumer action) {
+        int common = 0;
+        if (this.shift == other.shift) {
+            common = Math.min(this.tailOffset(), other.tailOffset());
+            diff(this.shift, this.root, other.root, 0, common, action);
+        }
+        int shared = Math.min(this.size, other.size);
+        for (int i = common; i < shared; ++i) {
+            if (this.leafFor(i)[i & MASK] != other.leafFor(i)[i & MASK]) {
+                action.accept(i);
+            }
+        }
+        for (int i = shared, len = Math.max(this.size, other.size); i < len; ++i) {
+            action.accept(i);
+        }
+    }
+
+    private static void diff(int level, Object[] a, Object[] b, int base, int limit,
+            IntConsumer action) {
+        if (a == b) {
+            return;
+        }
+        for (int j = 0; j < WIDTH; ++j) {
+            int start = base + (j << level);
+            if (start >= limit) {
+                return;
+            }
+            if (level == 0) {
+                if (a[j] != b[j]) {
+                    action.accept(start);
+                }
+            } else {
+                diff(level - BITS, (Object[]) a[j], (Object[]) b[j], start, limit, action);
+            }
+        }
+    }
+
+    /**
+     * @return an estimate, assuming compressed references, of the bytes
+     *     of this list's own structure, excluding its elements, that are
+     *     not shared with {@code other} at the same place in the trie.
+     */
+    long nodeBytesNotIn(ImList<E> other) {
+        long bytes = LIST_BYTES;
+        if (this.tail != other.tail) {
+            bytes += ImList.arrayBytes(this.tail.length);
+        }
+        return bytes + ImList.nodeBytes(this.shift, this.root,
+                this.shift == other.shift ? other.root : null);
+    }
+
+    private static long nodeBytes(int level, Object[] a, Object[] b) {
+        if (a == b || a == EMPTY_NODE) {
+            return 0;
+        }
+        long bytes = ImList.arrayBytes(a.length);
+        if (level > 0) {
+            for (int j = 0; j < WIDTH && a[j] != null; ++j) {
+                bytes += nodeBytes(level - BITS, (Object[]) a[j],
+                        b == null ? null : (Object[]) b[j]);
+            }
+        }
+        return bytes;
+    }
+
+    private static long arrayBytes(int length) {
+        return (16 + 4L * length + 7) & ~7L;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException(
+                    "Index " + index + " out of bounds for length " + this.size);
+        }
     }
 
     @Override
     public String toString() {
-        return this.elems.toString();
+        StringBuilder output = new StringBuilder("[");
+        for (E elem : this) {
+            if (output.length() > 1) {
+                output.append(", ");
+            }
+            output.append(elem);
+        }
+        return output.append("]").toString();
     }
 }
@@ -1,55 +1,267 @@
-import java.util.LinkedHashMap;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
  * From
  * @author cs2030
  * An immutable implementation of {@code LinkedHashMap}.
+ * Keys are held in a persistent hash array mapped trie that maps each key
+ * to its position in an {@code ImList} of entries kept in insertion order,
+ * so {@code put} and {@code get} take O(log32 n) and share structure with
+ * the map they were derived from.
  */
 public class ImMap<K, V> implements Iterable<Map.Entry<K, V>> {
-    private final Map<K, V> map;
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final ImList<Map.Entry<K, V>> entries;
 
     public ImMap() {
-        this.map = new LinkedHashMap<K, V>();
+        this(new BitmapNode(0, new Object[0]), new ImList<Map.Entry<K, V>>());
+    }
+
+    private ImMap(Node root, ImList<Map.Entry<K, V>> entries) {
+        this.root = root;
+        this.entries = entries;
     }
 
     public ImMap<K, V> put(K key, V value) {
-        ImMap<K, V> newMap = new ImMap<K, V>();
-        newMap.map.putAll(this.map);
-        newMap.map.put(key, value);
-        return newMap;
+        Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<K, V>(key, value);
+        int hash = hash(key);
+        int index = this.root.find(key, hash, 0);
+        if (index >= 0) {
+            return new ImMap<K, V>(this.root, this.entries.set(index, entry));
+        }
+        Leaf leaf = new Leaf(key, hash, this.entries.size());
+        return new ImMap<K, V>(this.root.insert(leaf, 0), this.entries.add(entry));
     }
 
     public Set<K> keySet() {
-        return this.map.keySet();
+        return new AbstractSet<K>() {
+            public Iterator<K> iterator() {
+                Iterator<Map.Entry<K, V>> it = ImMap.this.iterator();
+                return new Iterator<K>() {
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    public K next() {
+                        return it.next().getKey();
+                    }
+                };
+            }
+
+            public int size() {
+                return ImMap.this.entries.size();
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return ImMap.this.root.find(key, hash(key), 0) >= 0;
+            }
+        };
     }
 
     public Collection<V> values() {
-        return this.map.values();
+        return new AbstractCollection<V>() {
+            public Iterator<V> iterator() {
+                Iterator<Map.Entry<K, V>> it = ImMap.this.iterator();
+                return new Iterator<V>() {
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    public V next() {
+                        return it.next().getValue();
+                    }
+                };
+            }
+
+            public int size() {
+                return ImMap.this.entries.size();
+            }
+        };
     }
 
     public Set<Map.Entry<K, V>> entrySet() {
-        return this.map.entrySet();
+        return new AbstractSet<Map.Entry<K, V>>() {
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return ImMap.this.iterator();
+            }
+
+            public int size() {
+                return ImMap.this.entries.size();
+            }
+        };
     }
 
     public Iterator<Map.Entry<K, V>> iterator() {
-        return this.entrySet().iterator();
+        return this.entries.iterator();
     }
 
     public Optional<V> get(Object key) {
-        return Optional.<V>ofNullable(this.map.get(key));
+        int index = this.root.find(key, hash(key), 0);
+        if (index < 0) {
+            return Optional.<V>empty();
+        }
+        return Optional.<V>ofNullable(this.entries.get(index).getValue());
     }
 
     boolean isEmpty() {
-        return this.map.isEmpty();
+        return this.entries.isEmpty();
     }
 
     @Override
     public String toString() {
-        return this.map.toString();
+        StringBuilder output = new StringBuilder("{");
+        for (Map.Entry<K, V> entry : this) {
+            if (output.length() > 1) {
+                output.append(", ");
+            }
+            output.append(entry);
+        }
+        return output.append("}").toString();
+    }
+
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private static int slot(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    /**
+     * A trie node. {@code find} returns the entry index of a key, or -1.
+     * {@code insert} is only called with keys not yet in the trie.
+     */
+    private interface Node {
+        int find(Object key, int hash, int shift);
+
+        Node insert(Leaf leaf, int shift);
+    }
+
+    private static class Leaf {
+        private final Object key;
+        private final int hash;
+        private final int index;
+
+        Leaf(Object key, int hash, int index) {
+            this.key = key;
+            this.hash = hash;
+            this.index = index;
+        }
+
+        boolean matches(Object key, int hash) {
+            return this.hash == hash && Objects.equals(this.key, key);
+        }
+    }
+
+    /**
+     * Holds up to 32 slots, each a {@code Leaf} or a child {@code Node},
+     * packed densely and addressed through the population count of the bitmap.
+     */
+    private static class BitmapNode implements Node {
+        private final int bitmap;
+        private final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int position(int bit) {
+            return Integer.bitCount(this.bitmap & (bit - 1));
+        }
+
+        public int find(Object key, int hash, int shift) {
+            int bit = 1 << slot(hash, shift);
+            if ((this.bitmap & bit) == 0) {
+                return -1;
+            }
+            Object slot = this.slots[this.position(bit)];
+            if (slot instanceof Leaf) {
+                Leaf leaf = (Leaf) slot;
+                return leaf.matches(key, hash) ? leaf.index : -1;
+            }
+            return ((Node) slot).find(key, hash, shift + BITS);
+        }
+
+        public Node insert(Leaf leaf, int shift) {
+            int bit = 1 << slot(leaf.hash, shift);
+            int pos = this.position(bit);
+            if ((this.bitmap & bit) == 0) {
+                Object[] newSlots = new Object[this.slots.length + 1];
+                System.arraycopy(this.slots, 0, newSlots, 0, pos);
+                newSlots[pos] = leaf;
+                System.arraycopy(this.slots, pos, newSlots, pos + 1,
+                        this.slots.length - pos);
+                return new BitmapNode(this.bitmap | bit, newSlots);
+            }
+            Object slot = this.slots[pos];
+            Object[] newSlots = this.slots.clone();
+            if (slot instanceof Leaf) {
+                newSlots[pos] = merge((Leaf) slot, leaf, shift + BITS);
+            } else {
+                newSlots[pos] = ((Node) slot).insert(leaf, shift + BITS);
+            }
+            return new BitmapNode(this.bitmap, newSlots);
+        }
+
+        private static Node merge(Leaf a, Leaf b, int shift) {
+            if (a.hash == b.hash) {
+                return new CollisionNode(a.hash, new Leaf[] { a, b });
+            }
+            int slotA = slot(a.hash, shift);
+            int slotB = slot(b.hash, shift);
+            if (slotA == slotB) {
+                return new BitmapNode(1 << slotA,
+                        new Object[] { merge(a, b, shift + BITS) });
+            }
+            return new BitmapNode((1 << slotA) | (1 << slotB), slotA < slotB
+                    ? new Object[] { a, b } : new Object[] { b, a });
+        }
+    }
+
+    /**
+     * Holds leaves whose full 32-bit hashes are equal.
+     */
+    private static class CollisionNode implements Node {
+        private final int hash;
+        private final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        public int find(Object key, int hash, int shift) {
+            for (Leaf leaf : this.leaves) {
+                if (leaf.matches(key, hash)) {
+                    return leaf.index;
+                }
+            }
+            return -1;
+        }
+
+        public Node insert(Leaf leaf, int shift) {
+            if (leaf.hash == this.hash) {
+                Leaf[] newLeaves = new Leaf[this.leaves.length + 1];
+                System.arraycopy(this.leaves, 0, newLeaves, 0, this.leaves.length);
+                newLeaves[this.leaves.length] = leaf;
+                return new CollisionNode(this.hash, newLeaves);
+            }
+            return new BitmapNode(1 << slot(this.hash, shift), new Object[] { this })
+                .insert(leaf, shift);
+        }
     }
 }
@@ -0,0 +1,50 @@
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive {@code int}s.
+ */
+class IntList {
+    private int[] elems;
+    private int size;
+
+    IntList() {
+        this.elems = new int[8];
+    }
+
+    void add(int elem) {
+        if (this.size == this.elems.length) {
+            this.elems = Arrays.copyOf(this.elems, this.size * 2);
+        }
+        this.elems[this.size++] = elem;
+    }
+
+    int get(int index) {
+        return this.elems[index];
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes one occurrence of {@code elem} by moving the last element
+     * into its place, so the order of the list is not kept.
+     */
+    boolean removeUnordered(int elem) {
+        for (int i = 0; i < this.size; ++i) {
+            if (this.elems[i] == elem) {
+                this.elems[i] = this.elems[--this.size];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        this.size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(this.elems, this.size);
+    }
+}
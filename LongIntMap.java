@@ -0,0 +1,80 @@
+/**
+ * A mutable open-addressing hash table from {@code long} keys to
+ * non-negative {@code int} values, using linear probing over parallel
+ * primitive arrays so that lookups and inserts allocate nothing.
+ */
+class LongIntMap {
+    private long[] keys;
+    // value + 1, so that 0 marks an empty slot
+    private int[] values;
+    private int size;
+    private int mask;
+
+    LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Packs a directed (origin, destination) pair of vertex ids into one key.
+     */
+    static long key(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    int get(long key) {
+        for (int i = mix(key) & this.mask; this.values[i] != 0; i = (i + 1) & this.mask) {
+            if (this.keys[i] == key) {
+                return this.values[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must be non-negative: " + value);
+        }
+        int i = mix(key) & this.mask;
+        for (; this.values[i] != 0; i = (i + 1) & this.mask) {
+            if (this.keys[i] == key) {
+                this.values[i] = value + 1;
+                return;
+            }
+        }
+        this.keys[i] = key;
+        this.values[i] = value + 1;
+        if (++this.size * 2 > this.keys.length) {
+            this.grow();
+        }
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new long[oldKeys.length * 2];
+        this.values = new int[oldValues.length * 2];
+        this.mask = this.keys.length - 1;
+        for (int j = 0; j < oldKeys.length; ++j) {
+            if (oldValues[j] != 0) {
+                int i = mix(oldKeys[j]) & this.mask;
+                while (this.values[i] != 0) {
+                    i = (i + 1) & this.mask;
+                }
+                this.keys[i] = oldKeys[j];
+                this.values[i] = oldValues[j];
+            }
+        }
+    }
+}
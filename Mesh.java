@@ -1,14 +1,45 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * Derived from
  * @author enjmiah
+ * An immutable half-edge mesh. Elements are stored by id in persistent
+ * lists of immutable records, so each Euler operator copies only the
+ * records it changes and shares everything else with the mesh it was
+ * applied to. {@code Vertex}, {@code Face} and {@code HalfEdge} are
+ * views of an element of one particular mesh.
  */
 public class Mesh {
-    private final ImList<Vertex> vertices;
-    private final ImList<Face> faces;
-    private final ImList<HalfEdge> edges;
+    private static volatile Validation validation = Validation.fromProperty();
+    // a selection of fewer than 1 in this many vertices is path copied
+    private static final int REBUILD_RATIO = 16;
+    // object sizes assuming 12-byte headers and compressed references
+    private static final long MESH_BYTES = 40;
+    private static final long VERTEX_BYTES = 24;
+    private static final long POINT_BYTES = 32;
+    private static final long FACE_BYTES = 16;
+    private static final long EDGE_BYTES = 40;
+    private static final long SLOT_BYTES = 32;
+    private static final AtomicReferenceFieldUpdater<Mesh, MeshGeometry> GEOMETRY =
+        AtomicReferenceFieldUpdater.newUpdater(Mesh.class, MeshGeometry.class, "geometry");
+
+    private final ImList<VertexData> vertices;
+    private final ImList<FaceData> faces;
+    private final ImList<EdgeData> edges;
+    private final FreeSlots freeVertices;
+    private final FreeSlots freeFaces;
+    private final FreeSlots freeEdges;
+    // created on the first geometry query, or derived from the mesh this one was edited from
+    private volatile MeshGeometry geometry;
 
     /**
      * Constructs a mesh based on the Wavefront OBJ format.
@@ -16,488 +47,694 @@ public class Mesh {
      *
      * @param points a {@code List} of {@code Point} for each vertex in the mesh.
      * @param faces  a {@code List} of a {@code List} of integers for the indices of each vertex in each face.
+     * @throws IllegalArgumentException if a face has fewer than 3 vertices.
      */
     public Mesh(ImList<? extends Point> points,
             ImList<? extends ImList<? extends Integer>> faces) {
-        ImList<Vertex> newVertices = new ImList<Vertex>();
-        ImList<Face> newFaces = new ImList<Face>();
-        ImList<HalfEdge> newEdges = new ImList<HalfEdge>();
-        ImMap<String, HalfEdge> newEdgeMap = new ImMap<String, HalfEdge>();
-
-        for (int i = 0; i < points.size(); ++i) {
-            Vertex v = new Vertex(i, points.get(i));
-            newVertices = newVertices.add(v);
-        }
-        
-        for (ImList<? extends Integer> f : faces) {
-            ImList<HalfEdge> faceEdges = new ImList<HalfEdge>();
-            for (int i = 0; i < f.size(); ++i) {
-                int i2 = i < f.size() - 1 ? i + 1 : 0;
-                HalfEdge edge = new HalfEdge(newEdges.size());
-                Vertex v1 = newVertices.get(f.get(i));
-                Vertex v2 = newVertices.get(f.get(i2));
-                String key = v1.getId() + ";" + v2.getId();
-                newEdgeMap = newEdgeMap.put(key, edge);
-                edge.setVertex(v1);
-                if (v1.getHalfEdge().isEmpty()) {
-                    v1.setHalfEdge(edge);
-                }
-                Optional<HalfEdge> twin = newEdgeMap.get(
-                        v2.getId() + ";" + v1.getId());
-                if (twin.isPresent()) {
-                    edge.setTwin(twin.get());
-                    twin.get().setTwin(edge);
-                }
-                newEdges = newEdges.add(edge);
-                faceEdges = faceEdges.add(edge);
-            }
-            
-            Face face = new Face(newFaces.size());
-            face.setHalfEdge(faceEdges.get(0));
-            newFaces = newFaces.add(face);
-            for (HalfEdge currEdge : faceEdges) {
-                currEdge.setFace(face);
-            }
-            int len = faceEdges.size();
-            for (int i = 0; i < len; ++i) {
-                faceEdges.get(i).setNext(faceEdges.get((i + 1) % len));
-                faceEdges.get(i).setPrev(faceEdges.get((i - 1 + len) % len));
-            }
-        }
-
-        for (int i = 0, len = newEdges.size(); i < len; ++i) {
-            HalfEdge edge = newEdges.get(i);
-            if (edge.getTwin().isEmpty()) {
-                HalfEdge newHalfEdge = new HalfEdge(newEdges.size());
-                Vertex v1 = edge.getNext().get().getVertex().get();
-                Vertex v2 = edge.getVertex().get();
-                String key = v1.getId() + ";" + v2.getId();
-                newEdgeMap = newEdgeMap.put(key, newHalfEdge);
-                newHalfEdge.setVertex(v1);
-                if (v1.getHalfEdge().isEmpty()) {
-                    v1.setHalfEdge(newHalfEdge);
-                }
-                Optional<HalfEdge> twin = newEdgeMap.get(
-                        v2.getId() + ";" + v1.getId());
-                if (twin.isPresent()) {
-                    newHalfEdge.setTwin(twin.get());
-                    twin.get().setTwin(newHalfEdge);
-                }
-                newEdges = newEdges.add(newHalfEdge);
-            }
-        }
-
-        for (HalfEdge edge : newEdges) {
-            if (edge.getFace().isEmpty()) {
-                Optional<HalfEdge> next = edge.getTwin();
-                if (next.isPresent()) {
-                    do {
-                        Optional<HalfEdge> newNext = next.get().getPrev();
-                        if (newNext.isPresent()) {
-                            next = newNext.get().getTwin();
-                        }
-                    } while (next.get().getFace().isPresent());
-                    edge.setNext(next.get());
-                    next.get().setPrev(edge);
-                }
-            }
-        }
+        this(new MeshKernel(points, faces).toMesh());
+    }
 
-        this.vertices = newVertices;
-        this.faces = newFaces;
-        this.edges = newEdges;
+    /**
+     * Constructs the same mesh as the OBJ constructor, building it in parallel
+     * on the common fork-join pool; see {@code MeshKernel.parallel}.
+     */
+    public static Mesh parallel(ImList<? extends Point> points,
+            ImList<? extends ImList<? extends Integer>> faces) {
+        return MeshKernel.parallel(points, faces).toMesh();
     }
 
     protected Mesh(Mesh m) {
-        this(m.vertices, m.faces, m.edges);
+        this(m.vertices, m.faces, m.edges, m.freeVertices, m.freeFaces, m.freeEdges);
+        this.geometry = m.geometry;
+    }
+
+    Mesh(ImList<VertexData> vertices, ImList<FaceData> faces, ImList<EdgeData> edges) {
+        this(vertices, faces, edges, null, null, null);
     }
 
-    private Mesh(ImList<Vertex> vertices, ImList<Face> faces, ImList<HalfEdge> edges) {
+    /**
+     * A killed element leaves a {@code null} in its slot, so that ids always
+     * equal positions, and its slot is pushed on a free list for the next
+     * element of its kind to reuse. Each slot has a generation, increased
+     * on reuse, so that a {@code Vertex}, {@code Face} or {@code HalfEdge}
+     * of an element that was killed is not taken for the one now in its slot.
+     */
+    Mesh(ImList<VertexData> vertices, ImList<FaceData> faces, ImList<EdgeData> edges,
+            FreeSlots freeVertices, FreeSlots freeFaces, FreeSlots freeEdges) {
         this.vertices = vertices;
         this.faces = faces;
         this.edges = edges;
+        this.freeVertices = freeVertices;
+        this.freeFaces = freeFaces;
+        this.freeEdges = freeEdges;
     }
 
-    public void check() {
-        for (HalfEdge e : this.edges) {
-            if (e.getTwin().isPresent() &&
-                    !e.equals(e.getTwin().get().getTwin().get())) {
-                throw new Error("edge: twin inconsistent");
-            }
-            if (e.getNext().isPresent() &&
-                    !e.getFace().equals(e.getNext().get().getFace())) {
-                throw new Error("edge: next face inconsistent");
-            }
-            if (e.getPrev().isPresent() &&
-                    !e.getFace().equals(e.getPrev().get().getFace())) {
-                throw new Error("edge: prev face inconsistent");
-            }
-            if (e.getPrev().isPresent() &&
-                    !e.equals(e.getPrev().get().getNext().get())) {
-                throw new Error("edge: next inconsistent");
-            }
-            if (e.getNext().isPresent() &&
-                    !e.equals(e.getNext().get().getPrev().get())) {
-                throw new Error("edge: prev inconsistent");
-            }
-        }
+    static final class VertexData {
+        final Point p;
+        final int edge;
+        final int generation;
 
-        for (Vertex v : this.vertices) {
-            if (v.getHalfEdge().isPresent() &&
-                    !v.equals((v.getHalfEdge().get()).getVertex().get())) {
-                throw new Error("vertex: edge inconsistent");
-            }
+        VertexData(Point p, int edge) {
+            this(p, edge, 0);
         }
 
-        for (Face f : this.faces) {
-            if (f.getHalfEdge().isPresent() &&
-                    !f.equals((f.getHalfEdge().get()).getFace().get())) {
-                throw new Error("face: edge inconsistent");
-            }
+        VertexData(Point p, int edge, int generation) {
+            this.p = p;
+            this.edge = edge;
+            this.generation = generation;
         }
     }
 
-    public Mesh copy() {
-        ImList<Vertex> vertices = new ImList<Vertex>();
-        ImList<Face> faces = new ImList<Face>();
-        ImList<HalfEdge> edges = new ImList<HalfEdge>();
-        for (Vertex v : this.vertices) {
-            vertices = vertices.add(v.copy());
-        }
-        for (Face f : this.faces) {
-            faces = faces.add(f.copy());
-        }
-        for (HalfEdge e: this.edges) {
-            edges = edges.add(e.copy());
+    static final class FaceData {
+        final int edge;
+        final int generation;
+
+        FaceData(int edge) {
+            this(edge, 0);
         }
-        Mesh mesh = new Mesh(vertices, faces, edges);
-        
-        for (int i = 0; i < mesh.vertices.size(); ++i) {
-            mesh.vertices.get(i).setHalfEdge(
-                    mesh.edges.get(this.edges.indexOf(
-                            this.vertices.get(i).getHalfEdge().get())));
+
+        FaceData(int edge, int generation) {
+            this.edge = edge;
+            this.generation = generation;
         }
-        for (int i = 0; i < mesh.faces.size(); ++i) {
-            mesh.faces.get(i).setHalfEdge(
-                    mesh.edges.get(this.edges.indexOf(
-                            this.faces.get(i).getHalfEdge().get())));
+    }
+
+    /**
+     * The connectivity of a half-edge. -1 marks an absent reference.
+     */
+    static final class EdgeData {
+        final int vertex;
+        final int face;
+        final int twin;
+        final int next;
+        final int prev;
+        final int generation;
+
+        EdgeData(int vertex, int face, int twin, int next, int prev) {
+            this(vertex, face, twin, next, prev, 0);
         }
-        for (int i = 0; i < mesh.edges.size(); ++i) {
-            HalfEdge e = mesh.edges.get(i);
-            HalfEdge og = this.edges.get(i);
-            e.setNext(mesh.edges.get(
-                        this.edges.indexOf(og.getNext().get())));
-            e.setPrev(mesh.edges.get(
-                        this.edges.indexOf(og.getPrev().get())));
-            e.setTwin(mesh.edges.get(
-                        this.edges.indexOf(og.getTwin().get())));
-            e.setVertex(mesh.vertices.get(
-                        this.vertices.indexOf(og.getVertex().get())));
-            if (og.getFace().isPresent()) {
-                e.setFace(mesh.faces.get(
-                            this.faces.indexOf(og.getFace().get())));
-            }
+
+        EdgeData(int vertex, int face, int twin, int next, int prev, int generation) {
+            this.vertex = vertex;
+            this.face = face;
+            this.twin = twin;
+            this.next = next;
+            this.prev = prev;
+            this.generation = generation;
         }
-        return mesh;
+    }
+
+    public static Validation getValidation() {
+        return validation;
+    }
+
+    /**
+     * Sets how meshes are checked after each Euler operator
+     * and each {@code MeshEditor.commit}.
+     */
+    public static void setValidation(Validation validation) {
+        Mesh.validation = validation;
+    }
+
+    /**
+     * Starts a batch of Euler operators on this mesh.
+     * The mesh itself is not changed; see {@code MeshEditor.commit}.
+     */
+    public MeshEditor edit() {
+        return new MeshEditor(this, this.vertices, this.faces, this.edges,
+                this.freeVertices, this.freeFaces, this.freeEdges);
+    }
+
+    public void check() {
+        this.edit().check();
+    }
+
+    /**
+     * Checks the mesh in parallel and reports every violation;
+     * see {@code MeshEditor.validate}.
+     */
+    public ValidationReport validate(boolean geometry) {
+        return this.edit().validate(geometry);
+    }
+
+    /**
+     * Meshes are immutable, so the copy shares all of its storage.
+     */
+    public Mesh copy() {
+        return new Mesh(this);
     }
 
     public Mesh moveVertex(Vertex v, Point p) {
-        int i = this.vertices.indexOf(v);
-        if (i == -1) {
+        MeshEditor editor = this.edit();
+        if (!editor.moveVertex(v, p)) {
             return this;
         }
-        Mesh mesh = this.copy();
-        Vertex v1 = mesh.vertices.get(i);
-        Vertex v2 = v1.move(p);
-        for (HalfEdge e : mesh.edges) {
-            if (e.getVertex().get().equals(v1)) {
-                e.setVertex(v2);
-            }
-        }
-        mesh = new Mesh(mesh.vertices.set(i, v2),
-                mesh.faces, mesh.edges);
-        mesh.check();
-        return mesh;
+        return editor.commit();
     }
 
     public Mesh splitEdgeMakeVert(HalfEdge e, Point vertexPoint) {
-        int i = this.edges.indexOf(e);
-        if (i == -1) {
+        MeshEditor editor = this.edit();
+        if (editor.splitEdgeMakeVert(e, vertexPoint) == -1) {
             return this;
         }
-        Vertex newVertex = new Vertex(this.vertices.size(), vertexPoint);
-        HalfEdge v2In = new HalfEdge(this.edges.size());
-        HalfEdge v1In = new HalfEdge(this.edges.size() + 1);
-        Mesh mesh = this.copy();
-        HalfEdge v1Out = mesh.edges.get(i);
-        HalfEdge v2Out = v1Out.getTwin().get();
-        Vertex v1 = v1Out.getVertex().get();
-        Vertex v2 = v2Out.getVertex().get();
-
-        newVertex.setHalfEdge(v2In);
-        v1Out.getNext().get().setPrev(v2In);
-        v2In.setNext(v1Out.getNext().get());
-        v2Out.getNext().get().setPrev(v1In);
-        v1In.setNext(v2Out.getNext().get());
-        v1Out.setNext(v2In);
-        v1Out.setTwin(v1In);
-        v2Out.setNext(v1In);
-        v2Out.setTwin(v2In);
-        v2In.setVertex(newVertex);
-        v2In.setPrev(v1Out);
-        v2In.setTwin(v2Out);
-        if (v1Out.getFace().isPresent()) {
-            v2In.setFace(v1Out.getFace().get());
-        }
-        v1In.setVertex(newVertex);
-        v1In.setPrev(v2Out);
-        v1In.setTwin(v1Out);
-        if (v2Out.getFace().isPresent()) {
-            v1In.setFace(v2Out.getFace().get());
-        }
-    
-        mesh = new Mesh(mesh.vertices.add(newVertex), mesh.faces,
-                mesh.edges.addAll(List.of(v2In, v1In)));
-        mesh.check();
-        return mesh;
+        return editor.commit();
     }
-    
+
     public Mesh joinEdgeKillVert(Vertex v) {
-        int i = this.vertices.indexOf(v);
-        if (i == -1) {
+        MeshEditor editor = this.edit();
+        if (!editor.joinEdgeKillVert(v)) {
             return this;
         }
-        int count = 0;
-        HalfEdge start = v.getHalfEdge().get();
-        HalfEdge curr = start;
-        do {
-            ++count;
-            curr = curr.getNext().get();
-        } while (!start.equals(curr));
-        if (getVertexHalfEdges(v).size() > 2 || count <= 3) {
+        return editor.commit();
+    }
+
+    public Mesh splitFaceMakeEdge(Face face, Vertex vertex1, Vertex vertex2) {
+        MeshEditor editor = this.edit();
+        if (editor.splitFaceMakeEdge(face, vertex1, vertex2) == -1) {
             return this;
         }
+        return editor.commit();
+    }
 
-        Mesh mesh = this.copy();
-        Vertex v2 = mesh.vertices.get(i);
-        HalfEdge v2Out = mesh.vertices.get(i).getHalfEdge().get();
-        HalfEdge v2In = v2Out.getTwin().get();
-        HalfEdge v1Out = v2Out.getPrev().get();
-        HalfEdge v1In = v1Out.getTwin().get();
-        Vertex v1 = v1Out.getVertex().get();
-        Vertex v3 = v2In.getVertex().get();
-        
-        v1Out.setNext(v2Out.getNext().get());
-        v2Out.getNext().get().setPrev(v1Out);
-        v2In.setNext(v1In.getNext().get());
-        v1In.getNext().get().setPrev(v2In);
-        v1Out.setTwin(v2In);
-        v2In.setTwin(v1Out);
-        if (v1Out.getFace().isPresent()) {
-            v1Out.getFace().get().setHalfEdge(v1Out);
-        }
-        if (v2In.getFace().isPresent()) {
-            v2In.getFace().get().setHalfEdge(v2In);
+    public Mesh joinFaceKillEdge(HalfEdge edge) {
+        MeshEditor editor = this.edit();
+        if (!editor.joinFaceKillEdge(edge)) {
+            return this;
         }
+        return editor.commit();
+    }
 
-        ImList<Vertex> vertices = mesh.vertices.remove(i);
-        ImList<HalfEdge> edges = new ImList<HalfEdge>();
-        for (HalfEdge e : mesh.edges) {
-            if (!e.equals(v2Out) && !e.equals(v1In)) {
-                edges = edges.add(e);
+    /**
+     * Moves every vertex by {@code t} in one pass: the coordinates are
+     * unpacked into arrays, transformed by a scalar loop over ranges run in
+     * parallel, and packed into new vertex records. There is no explicit
+     * SIMD path. Faces and half-edges are shared with this mesh.
+     * Only positions change, so the topology needs no validation.
+     */
+    public Mesh transform(Transform t) {
+        int n = this.vertices.size();
+        VertexData[] records = new VertexData[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        int v = 0;
+        for (VertexData d : this.vertices) {
+            records[v] = d;
+            if (d != null) {
+                xs[v] = d.p.getX();
+                ys[v] = d.p.getY();
             }
-        }
-        mesh = new Mesh(vertices, mesh.faces, edges);
-        mesh.check();
-        return mesh;
+            ++v;
+        }
+        Parallel.forRange(n, (from, to) -> {
+            t.apply(xs, ys, from, to);
+            for (int i = from; i < to; ++i) {
+                if (records[i] != null) {
+                    records[i] = new VertexData(new Point(xs[i], ys[i]), records[i].edge,
+                            records[i].generation);
+                }
+            }
+        });
+        return new Mesh(new ImList<VertexData>(Arrays.asList(records)), this.faces, this.edges,
+                this.freeVertices, this.freeFaces, this.freeEdges);
     }
 
-    public Mesh splitFaceMakeEdge(Face face, Vertex vertex1, Vertex vertex2) {
-        int faceIndex = this.faces.indexOf(face);
-        int v1Index = this.vertices.indexOf(vertex1);
-        int v2Index = this.vertices.indexOf(vertex2);
-        if (faceIndex == -1 || v1Index == -1 || v2Index == -1) {
-            return this;
-        }
-        if (getFaceHalfEdges(face).size() <= 3) {
-            return this;
-        }
-        boolean v1OnFace = false;
-        int v1OutIndex = 0;
-        boolean v2OnFace = false;
-        int v2OutIndex = 0;
-        for (HalfEdge e : getFaceHalfEdges(face)) {
-            if (e.getVertex().get().equals(vertex1)) {
-                v1OnFace = true;
-                v1OutIndex = this.edges.indexOf(e);
-            } else if (e.getVertex().get().equals(vertex2)) {
-                v2OnFace = true;
-                v2OutIndex = this.edges.indexOf(e);
+    /**
+     * Moves the vertices in {@code selection} by {@code t}, each once,
+     * ignoring those that are not live in this mesh; see {@code isLive}.
+     * A small selection is path copied into the vertex list, a large one
+     * rebuilds it as {@code transform(Transform)} does.
+     */
+    public Mesh transform(Transform t, ImList<Vertex> selection) {
+        BitSet selected = new BitSet(this.vertices.size());
+        for (Vertex v : selection) {
+            if (this.isLive(v)) {
+                selected.set(v.getId());
             }
         }
-        if (!(v1OnFace && v2OnFace)) {
-            return this;
+        int k = selected.cardinality();
+        int[] ids = new int[k];
+        double[] xs = new double[k];
+        double[] ys = new double[k];
+        for (int i = 0, v = selected.nextSetBit(0); v >= 0; ++i, v = selected.nextSetBit(v + 1)) {
+            Point p = this.point(v);
+            ids[i] = v;
+            xs[i] = p.getX();
+            ys[i] = p.getY();
+        }
+        t.apply(xs, ys, 0, k);
+        ImList<VertexData> vertices = this.vertices;
+        if (k * Mesh.REBUILD_RATIO < vertices.size()) {
+            for (int i = 0; i < k; ++i) {
+                VertexData d = vertices.get(ids[i]);
+                vertices = vertices.set(ids[i],
+                        new VertexData(new Point(xs[i], ys[i]), d.edge, d.generation));
+            }
+        } else {
+            VertexData[] records = new VertexData[vertices.size()];
+            int v = 0;
+            for (VertexData d : vertices) {
+                records[v++] = d;
+            }
+            for (int i = 0; i < k; ++i) {
+                VertexData d = records[ids[i]];
+                records[ids[i]] = new VertexData(new Point(xs[i], ys[i]), d.edge, d.generation);
+            }
+            vertices = new ImList<VertexData>(Arrays.asList(records));
         }
-        Face newFace = new Face(this.faces.size());
-        HalfEdge newEdge1 = new HalfEdge(this.edges.size());
-        HalfEdge newEdge2 = new HalfEdge(this.edges.size() + 1);
-        Mesh mesh = this.copy();
-        Face oldFace = mesh.faces.get(faceIndex);
-        Vertex v1 = mesh.vertices.get(v1Index);
-        Vertex v2 = mesh.vertices.get(v2Index);
-        HalfEdge v1Out = mesh.edges.get(v1OutIndex);
-        HalfEdge v1In = v1Out.getPrev().get();
-        HalfEdge v2Out = mesh.edges.get(v2OutIndex);
-        HalfEdge v2In = v2Out.getPrev().get();
-        
-        oldFace.setHalfEdge(newEdge1);
-        newFace.setHalfEdge(newEdge2);
-
-        v1In.setNext(newEdge1);
-        v1Out.setPrev(newEdge2);
-        v2In.setNext(newEdge2);
-        v2Out.setPrev(newEdge1);
-        newEdge1.setPrev(v1In);
-        newEdge1.setNext(v2Out);
-        newEdge1.setTwin(newEdge2);
-        newEdge1.setVertex(v1);
-        newEdge1.setFace(oldFace);
-        newEdge2.setPrev(v2In);
-        newEdge2.setNext(v1Out);
-        newEdge2.setTwin(newEdge1);
-        newEdge2.setVertex(v2);
-
-        HalfEdge start = v1Out;
-        HalfEdge curr = start;
-        do {
-            curr.setFace(newFace);
-            curr = curr.getNext().get();
-        } while (!start.equals(curr));
+        return new Mesh(vertices, this.faces, this.edges,
+                this.freeVertices, this.freeFaces, this.freeEdges).inheritGeometry(this);
+    }
 
-        mesh = new Mesh(mesh.vertices, mesh.faces.add(newFace),
-                mesh.edges.addAll(List.of(newEdge1, newEdge2)));
-        mesh.check();
-        return mesh;
+    /**
+     * @return the free vertex slots, in the order they will be reused.
+     */
+    int[] freeVertexSlots() {
+        return Mesh.slots(this.freeVertices);
     }
- 
-    public Mesh joinFaceKillEdge(HalfEdge edge) {
-        int i = this.edges.indexOf(edge);
-        if (i == -1) {
-            return this;
-        }
-        Mesh mesh = this.copy();
-        HalfEdge v1Out = mesh.edges.get(i);
-        HalfEdge v2Out = v1Out.getTwin().get();
-        if (v1Out.getFace().isEmpty() || v2Out.getFace().isEmpty()) {
-            return this;
-        }
-        Face f1 = v1Out.getFace().get();
-        Face f2 = v2Out.getFace().get();
-        int count = 0;
-        for (HalfEdge e : getFaceHalfEdges(f1)) {
-            if (e.getFace().get().equals(f1) &&
-                    e.getTwin().get().getFace().isPresent() &&
-                    e.getTwin().get().getFace().get().equals(f2)) {
-                count++;
-            }
+
+    int[] freeFaceSlots() {
+        return Mesh.slots(this.freeFaces);
+    }
+
+    int[] freeHalfEdgeSlots() {
+        return Mesh.slots(this.freeEdges);
+    }
+
+    private static int[] slots(FreeSlots free) {
+        IntList slots = new IntList();
+        for (FreeSlots s = free; s != null; s = s.next) {
+            slots.add(s.slot);
         }
-        if (count > 1) {
-            return this;
+        return slots.toArray();
+    }
+
+    /**
+     * @return this mesh with the given free slots, each at generation 0;
+     *     the slots must be the empty ones of this mesh.
+     */
+    Mesh withFreeSlots(int[] vertices, int[] faces, int[] edges) {
+        return new Mesh(this.vertices, this.faces, this.edges, Mesh.freeSlots(vertices),
+                Mesh.freeSlots(faces), Mesh.freeSlots(edges));
+    }
+
+    private static FreeSlots freeSlots(int[] slots) {
+        FreeSlots free = null;
+        for (int i = slots.length - 1; i >= 0; --i) {
+            free = new FreeSlots(slots[i], 0, free);
         }
-        Vertex v1 = v1Out.getVertex().get();
-        Vertex v2 = v2Out.getVertex().get();
+        return free;
+    }
+
+    /**
+     * Renumbers the elements without gaps, keeping the order of the vertices;
+     * see {@code MeshLayout}. Elements get new ids, so views of this mesh
+     * do not carry over to the result.
+     */
+    public Mesh compact() {
+        return MeshLayout.renumber(this, MeshLayout.idOrder(this));
+    }
+
+    /**
+     * Renumbers the elements without gaps along a Hilbert curve over the
+     * vertex positions, so that traversals of neighbouring elements touch
+     * neighbouring storage; see {@code MeshLayout}.
+     */
+    public Mesh reorder() {
+        return MeshLayout.renumber(this, MeshLayout.hilbertOrder(this));
+    }
 
-        for (HalfEdge e : getFaceHalfEdges(f2)) {
-            e.setFace(f1);
+    /**
+     * Gives this mesh a geometry cache derived from that of {@code previous},
+     * the mesh it was edited from, if {@code previous} has one.
+     */
+    Mesh inheritGeometry(Mesh previous) {
+        MeshGeometry g = previous.geometry;
+        if (g != null && this.geometry == null) {
+            this.geometry = g.derive(previous, this);
         }
-        v1Out.getPrev().get().setNext(v2Out.getNext().get());
-        v1Out.getNext().get().setPrev(v2Out.getPrev().get());
-        v2Out.getPrev().get().setNext(v1Out.getNext().get());
-        v2Out.getNext().get().setPrev(v1Out.getPrev().get());
-        f1.setHalfEdge(v1Out.getNext().get());
-        v1.setHalfEdge(v2Out.getNext().get());
-        v2.setHalfEdge(v1Out.getNext().get());
-
-        int j = mesh.edges.indexOf(v2Out);
-        int index1, index2 = -1;
-        if (i < j) {
-            index1 = i;
-            index2 = j;
-        } else {
-            index1 = j;
-            index2 = i;
+        return this;
+    }
+
+    /**
+     * Threads racing on the first query each build a cache and all keep
+     * the one installed first, so that readers never wait on a lock.
+     */
+    private MeshGeometry geometry() {
+        MeshGeometry g = this.geometry;
+        if (g == null) {
+            GEOMETRY.compareAndSet(this, null, new MeshGeometry(this));
+            g = this.geometry;
         }
-        int f2Index = mesh.faces.indexOf(f2);
-        mesh = new Mesh(mesh.vertices, mesh.faces.remove(f2Index),
-                mesh.edges.remove(index1).remove(index2 - 1));
-        mesh.check();
-        return mesh;
+        return g;
+    }
+
+    double edgeLength(int e) {
+        return this.geometry().edgeLength(this, e);
+    }
+
+    double edgeAngle(int e) {
+        return this.geometry().edgeAngle(this, e);
+    }
+
+    double faceArea(int f) {
+        return this.geometry().faceArea(this, f);
+    }
+
+    double facePerimeter(int f) {
+        return this.geometry().facePerimeter(this, f);
+    }
+
+    Point faceCentroid(int f) {
+        return this.geometry().faceCentroid(this, f);
     }
-    
+
     public ImList<HalfEdge> getFaceHalfEdges(Face f) {
-        if (f.getHalfEdge().isEmpty()) {
-            return new ImList<HalfEdge>();
-        }
-        ImList<HalfEdge> edges = new ImList<HalfEdge>();
-        HalfEdge start = f.getHalfEdge().get();
-        HalfEdge curr = start;
-        do {
-            edges = edges.add(curr);
-            curr = curr.getNext().get();
-        } while (!start.equals(curr));
-        return edges;
+        List<HalfEdge> edges = new ArrayList<HalfEdge>();
+        this.forEachFaceHalfEdge(f, edges::add);
+        return new ImList<HalfEdge>(edges);
     }
-    
+
     public ImList<HalfEdge> getVertexHalfEdges(Vertex v) {
-        if (v.getHalfEdge().isEmpty()) {
-            return new ImList<HalfEdge>();
+        List<HalfEdge> edges = new ArrayList<HalfEdge>();
+        this.forEachVertexHalfEdge(v, edges::add);
+        return new ImList<HalfEdge>(edges);
+    }
+
+    public void forEachFaceHalfEdge(Face f, Consumer<? super HalfEdge> action) {
+        this.forEachFaceHalfEdge(f.getId(), e -> action.accept(new HalfEdge(this, e)));
+    }
+
+    public void forEachVertexHalfEdge(Vertex v, Consumer<? super HalfEdge> action) {
+        this.forEachVertexHalfEdge(v.getId(), e -> action.accept(new HalfEdge(this, e)));
+    }
+
+    /**
+     * Visits the ids of the half-edges around a face in {@code next} order.
+     * Allocates nothing per half-edge.
+     */
+    public void forEachFaceHalfEdge(int faceId, IntConsumer action) {
+        if (!this.isLiveFace(faceId)) {
+            return;
+        }
+        int start = this.faceHalfEdge(faceId);
+        if (start == -1) {
+            return;
         }
-        ImList<HalfEdge> edges = new ImList<HalfEdge>();
-        HalfEdge start = v.getHalfEdge().get();
-        HalfEdge curr = start;
+        int curr = start;
         do {
-            edges = edges.add(curr);
-            curr = curr.getPrev().get().getTwin().get();
-        } while (!start.equals(curr));
-        return edges;
+            action.accept(curr);
+            curr = this.next(curr);
+        } while (start != curr);
+    }
+
+    /**
+     * Visits the ids of the outgoing half-edges of a vertex.
+     * Allocates nothing per half-edge.
+     */
+    public void forEachVertexHalfEdge(int vertexId, IntConsumer action) {
+        for (PrimitiveIterator.OfInt it = this.vertexStar(vertexId); it.hasNext(); ) {
+            action.accept(it.nextInt());
+        }
+    }
+
+    /**
+     * Iterates over the ids of the outgoing half-edges of a vertex,
+     * in the same order as {@code getVertexHalfEdges}.
+     */
+    public PrimitiveIterator.OfInt vertexStar(int vertexId) {
+        int start = this.isLiveVertex(vertexId) ? this.vertexHalfEdge(vertexId) : -1;
+        return new PrimitiveIterator.OfInt() {
+            private int curr = start;
+
+            public boolean hasNext() {
+                return this.curr != -1;
+            }
+
+            public int nextInt() {
+                if (this.curr == -1) {
+                    throw new NoSuchElementException();
+                }
+                int e = this.curr;
+                int n = Mesh.this.twin(Mesh.this.prev(e));
+                this.curr = n == start ? -1 : n;
+                return e;
+            }
+        };
+    }
+
+    public Optional<Vertex> getVertex(int id) {
+        return this.isLiveVertex(id) ? Optional.<Vertex>of(new Vertex(this, id))
+            : Optional.<Vertex>empty();
+    }
+
+    public Optional<Face> getFace(int id) {
+        return this.isLiveFace(id) ? Optional.<Face>of(new Face(this, id))
+            : Optional.<Face>empty();
+    }
+
+    public Optional<HalfEdge> getHalfEdge(int id) {
+        return this.isLiveHalfEdge(id) ? Optional.<HalfEdge>of(new HalfEdge(this, id))
+            : Optional.<HalfEdge>empty();
     }
 
     public ImList<Vertex> getVertices() {
-        ImList<Vertex> vertices = new ImList<Vertex>();
-        for (Vertex v : this.vertices) {
-            vertices = vertices.add(v);
+        List<Vertex> vertices = new ArrayList<Vertex>(this.vertices.size());
+        for (int i = 0; i < this.vertices.size(); ++i) {
+            if (this.isLiveVertex(i)) {
+                vertices.add(new Vertex(this, i));
+            }
         }
-        return vertices;
+        return new ImList<Vertex>(vertices);
     }
 
     public ImList<Face> getFaces() {
-        ImList<Face> faces = new ImList<Face>();
-        for (Face f : this.faces) {
-            faces = faces.add(f);
+        List<Face> faces = new ArrayList<Face>(this.faces.size());
+        for (int i = 0; i < this.faces.size(); ++i) {
+            if (this.isLiveFace(i)) {
+                faces.add(new Face(this, i));
+            }
         }
-        return faces;
+        return new ImList<Face>(faces);
     }
 
     public ImList<HalfEdge> getHalfEdges() {
-        ImList<HalfEdge> edges = new ImList<HalfEdge>();
-        for (HalfEdge e : this.edges) {
-            edges = edges.add(e);
+        List<HalfEdge> edges = new ArrayList<HalfEdge>(this.edges.size());
+        for (int i = 0; i < this.edges.size(); ++i) {
+            if (this.isLiveHalfEdge(i)) {
+                edges.add(new HalfEdge(this, i));
+            }
         }
-        return edges;
+        return new ImList<HalfEdge>(edges);
+    }
+
+    int vertexCount() {
+        return this.vertices.size();
+    }
+
+    int faceCount() {
+        return this.faces.size();
+    }
+
+    int halfEdgeCount() {
+        return this.edges.size();
+    }
+
+    boolean isLiveVertex(int v) {
+        return v >= 0 && v < this.vertices.size() && this.vertices.get(v) != null;
+    }
+
+    boolean isLiveFace(int f) {
+        return f >= 0 && f < this.faces.size() && this.faces.get(f) != null;
+    }
+
+    boolean isLiveHalfEdge(int e) {
+        return e >= 0 && e < this.edges.size() && this.edges.get(e) != null;
+    }
+
+    /**
+     * @return whether {@code v} is a vertex of this mesh, and not one whose
+     *     slot was since reused.
+     */
+    public boolean isLive(Vertex v) {
+        return this.isLiveVertex(v.getId())
+            && this.vertexGeneration(v.getId()) == v.getGeneration();
+    }
+
+    public boolean isLive(Face f) {
+        return this.isLiveFace(f.getId())
+            && this.faceGeneration(f.getId()) == f.getGeneration();
+    }
+
+    public boolean isLive(HalfEdge e) {
+        return this.isLiveHalfEdge(e.getId())
+            && this.halfEdgeGeneration(e.getId()) == e.getGeneration();
+    }
+
+    /**
+     * The generation of a slot, or 0 if it is empty.
+     */
+    int vertexGeneration(int v) {
+        VertexData d = this.vertices.get(v);
+        return d == null ? 0 : d.generation;
+    }
+
+    int faceGeneration(int f) {
+        FaceData d = this.faces.get(f);
+        return d == null ? 0 : d.generation;
+    }
+
+    int halfEdgeGeneration(int e) {
+        EdgeData d = this.edges.get(e);
+        return d == null ? 0 : d.generation;
+    }
+
+    Point point(int v) {
+        return this.vertices.get(v).p;
+    }
+
+    int vertexHalfEdge(int v) {
+        return this.vertices.get(v).edge;
+    }
+
+    int faceHalfEdge(int f) {
+        return this.faces.get(f).edge;
+    }
+
+    int vertex(int e) {
+        return this.edges.get(e).vertex;
+    }
+
+    int face(int e) {
+        return this.edges.get(e).face;
+    }
+
+    int twin(int e) {
+        return this.edges.get(e).twin;
+    }
+
+    int next(int e) {
+        return this.edges.get(e).next;
+    }
+
+    int prev(int e) {
+        return this.edges.get(e).prev;
+    }
+
+    /**
+     * Visits the ids of elements whose records differ between this mesh and
+     * {@code other}, including elements only one of them has. Both meshes
+     * must descend from a common mesh for this to be cheaper than O(n).
+     */
+    void forEachChangedVertex(Mesh other, IntConsumer action) {
+        this.vertices.forEachDifference(other.vertices, action);
+    }
+
+    void forEachChangedFace(Mesh other, IntConsumer action) {
+        this.faces.forEachDifference(other.faces, action);
+    }
+
+    void forEachChangedHalfEdge(Mesh other, IntConsumer action) {
+        this.edges.forEachDifference(other.edges, action);
+    }
+
+    /**
+     * Visits the ids of faces whose polygon may differ between this mesh and
+     * {@code other}: changed faces, faces on either side of changed half-edges
+     * in both meshes, and faces around changed vertices in this mesh.
+     * A face may be visited more than once.
+     */
+    void forEachAffectedFace(Mesh other, IntConsumer action) {
+        IntConsumer live = f -> {
+            if (f != -1) {
+                action.accept(f);
+            }
+        };
+        this.forEachChangedFace(other, action);
+        this.forEachChangedVertex(other,
+                v -> this.forEachVertexHalfEdge(v, e -> live.accept(this.face(e))));
+        this.forEachChangedHalfEdge(other, e -> {
+            if (other.isLiveHalfEdge(e)) {
+                live.accept(other.face(e));
+            }
+            if (this.isLiveHalfEdge(e)) {
+                live.accept(this.face(e));
+            }
+        });
+    }
+
+    /**
+     * @return an estimate of the bytes of storage this mesh does not share
+     *     with {@code base}, the whole mesh if {@code base} is null, not
+     *     counting its geometry cache. This takes O(k log n) for k changed
+     *     elements when both meshes descend from a common mesh.
+     */
+    long bytesNotIn(Mesh base) {
+        Mesh b = base != null ? base : new Mesh(new ImList<VertexData>(),
+                new ImList<FaceData>(), new ImList<EdgeData>());
+        long[] bytes = { MESH_BYTES + this.vertices.nodeBytesNotIn(b.vertices)
+            + this.faces.nodeBytesNotIn(b.faces) + this.edges.nodeBytesNotIn(b.edges)
+            + Mesh.slotBytesNotIn(this.freeVertices, b.freeVertices)
+            + Mesh.slotBytesNotIn(this.freeFaces, b.freeFaces)
+            + Mesh.slotBytesNotIn(this.freeEdges, b.freeEdges) };
+        this.forEachChangedVertex(b, v -> {
+            if (this.isLiveVertex(v)) {
+                bytes[0] += VERTEX_BYTES;
+                if (!b.isLiveVertex(v) || b.point(v) != this.point(v)) {
+                    bytes[0] += POINT_BYTES;
+                }
+            }
+        });
+        this.forEachChangedFace(b, f -> bytes[0] += this.isLiveFace(f) ? FACE_BYTES : 0);
+        this.forEachChangedHalfEdge(b, e -> bytes[0] += this.isLiveHalfEdge(e) ? EDGE_BYTES : 0);
+        return bytes[0];
+    }
+
+    /**
+     * Free lists share their tails, so the nodes of {@code free} not in
+     * {@code base} are those before their common suffix. Their sizes align
+     * the two lists, so this takes time proportional to the slots pushed
+     * or popped between them rather than to their length.
+     */
+    private static long slotBytesNotIn(FreeSlots free, FreeSlots base) {
+        int n = free == null ? 0 : free.size;
+        int m = base == null ? 0 : base.size;
+        for (; m > n; --m) {
+            base = base.next;
+        }
+        int unshared = 0;
+        for (; n > m; --n) {
+            free = free.next;
+            ++unshared;
+        }
+        while (free != base) {
+            free = free.next;
+            base = base.next;
+            ++unshared;
+        }
+        return unshared * SLOT_BYTES;
+    }
+
+    /**
+     * @return this mesh without its geometry cache, for keeping it
+     *     without keeping the cache alive.
+     */
+    Mesh withoutGeometry() {
+        return this.geometry == null ? this : new Mesh(this.vertices, this.faces, this.edges,
+                this.freeVertices, this.freeFaces, this.freeEdges);
     }
 
     @Override
     public String toString() {
-        String output = "";
-        for (Vertex v : this.vertices) {
-            output += v.toString() + "\n";
+        StringBuilder output = new StringBuilder();
+        for (Vertex v : this.getVertices()) {
+            output.append(v).append('\n');
         }
-        for (Face f : this.faces) {
-            output += f.toString() + "\n";
+        for (Face f : this.getFaces()) {
+            output.append(f).append('\n');
         }
-        for (HalfEdge e : this.edges) {
-            output += e.toString() + "\n";
+        for (HalfEdge e : this.getHalfEdges()) {
+            output.append(e).append('\n');
         }
-        return output;
+        return output.toString();
     }
 }
@@ -0,0 +1,374 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Plain timing harness for the mesh hot paths.
+ * Run with {@code java -Xmx8g MeshBenchmark [name...]}, where the optional
+ * names select the benchmarks whose names start with one of them.
+ * Each benchmark is warmed up, then timed over several iterations, and
+ * reports time and bytes allocated per operation. Allocation is summed over
+ * all live threads, so work forked to the common pool is counted; bytes
+ * allocated by a thread that exits during a measurement are not.
+ * This is a plain harness in one JVM, without forks, so compare results
+ * between runs of the same build rather than as absolute numbers.
+ */
+class MeshBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final long SEED = 2030;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // keeps results alive so that the JIT cannot drop the benchmarked work
+    static volatile Object sink;
+
+    private static String[] filters = new String[0];
+
+    public static void main(String[] args) throws IOException {
+        filters = args;
+        Validation validation = Mesh.getValidation();
+        for (int side : new int[] { 100, 300, 1000 }) {
+            ImList<Point> points = gridPoints(side);
+            ImList<ImList<Integer>> faces = gridFaces(side);
+            construction("construction/grid/" + side, points, faces);
+            bench("construction/parallel/grid/" + side, 1, () -> Mesh.parallel(points, faces));
+        }
+        for (int side : new int[] { 100, 300 }) {
+            Random random = new Random(SEED);
+            construction("construction/random/" + side,
+                    jitteredPoints(side, random), randomFaces(side, random));
+        }
+
+        Mesh mesh = new Mesh(gridPoints(158), gridFaces(158));
+        bench("copy", 1, mesh::copy);
+        for (Validation mode : Validation.values()) {
+            Mesh.setValidation(mode);
+            eulerOperators("euler/" + mode.name().toLowerCase() + "/", mesh);
+        }
+        Mesh.setValidation(validation);
+        bench("check", 1, () -> {
+            mesh.check();
+            return mesh;
+        });
+        queries(mesh);
+        // the queries filled the geometry cache of mesh, which the operators now derive from
+        Mesh.setValidation(Validation.OFF);
+        eulerOperators("euler/cached/", mesh);
+        Mesh.setValidation(validation);
+        transforms(new Mesh(gridPoints(1000), gridFaces(1000)));
+        export(new Mesh(gridPoints(500), gridFaces(500)));
+        layout(500);
+        binary(500);
+    }
+
+    /**
+     * Generates a {@code side} by {@code side} grid of unit quads.
+     */
+    static ImList<Point> gridPoints(int side) {
+        ArrayList<Point> points = new ArrayList<Point>();
+        for (int y = 0; y <= side; ++y) {
+            for (int x = 0; x <= side; ++x) {
+                points.add(new Point(x, y));
+            }
+        }
+        return new ImList<Point>(points);
+    }
+
+    static ImList<ImList<Integer>> gridFaces(int side) {
+        ArrayList<ImList<Integer>> faces = new ArrayList<ImList<Integer>>();
+        for (int y = 0; y < side; ++y) {
+            for (int x = 0; x < side; ++x) {
+                int v = y * (side + 1) + x;
+                faces.add(new ImList<Integer>(List.of(v, v + 1, v + side + 2, v + side + 1)));
+            }
+        }
+        return new ImList<ImList<Integer>>(faces);
+    }
+
+    /**
+     * Generates the points of a grid, each moved randomly within its cell
+     * so that the cells stay convex.
+     */
+    static ImList<Point> jitteredPoints(int side, Random random) {
+        ArrayList<Point> points = new ArrayList<Point>();
+        for (int y = 0; y <= side; ++y) {
+            for (int x = 0; x <= side; ++x) {
+                points.add(new Point(x + 0.4 * (random.nextDouble() - 0.5),
+                            y + 0.4 * (random.nextDouble() - 0.5)));
+            }
+        }
+        return new ImList<Point>(points);
+    }
+
+    /**
+     * Generates a mix of polygons over the cells of a grid: each cell is
+     * either kept as a quad, split into two triangles along a random
+     * diagonal, or merged with the cell to its right into a hexagon.
+     */
+    static ImList<ImList<Integer>> randomFaces(int side, Random random) {
+        ArrayList<ImList<Integer>> faces = new ArrayList<ImList<Integer>>();
+        for (int y = 0; y < side; ++y) {
+            for (int x = 0; x < side; ++x) {
+                int v = y * (side + 1) + x;
+                int w = side + 1;
+                int kind = random.nextInt(4);
+                if (kind == 0 && x < side - 1) {
+                    faces.add(new ImList<Integer>(List.of(v, v + 1, v + 2,
+                                    v + w + 2, v + w + 1, v + w)));
+                    ++x;
+                } else if (kind == 1) {
+                    faces.add(new ImList<Integer>(List.of(v, v + 1, v + w + 1)));
+                    faces.add(new ImList<Integer>(List.of(v, v + w + 1, v + w)));
+                } else if (kind == 2) {
+                    faces.add(new ImList<Integer>(List.of(v, v + 1, v + w)));
+                    faces.add(new ImList<Integer>(List.of(v + 1, v + w + 1, v + w)));
+                } else {
+                    faces.add(new ImList<Integer>(List.of(v, v + 1, v + w + 1, v + w)));
+                }
+            }
+        }
+        return new ImList<ImList<Integer>>(faces);
+    }
+
+    /**
+     * Warms up, then times {@code body}, which performs {@code ops} operations
+     * per call, and prints the time and allocation per operation.
+     */
+    static void bench(String name, int ops, Supplier<?> body) {
+        if (!selected(name)) {
+            return;
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            sink = body.get();
+        }
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            sink = body.get();
+        }
+        double nanos = (double) (System.nanoTime() - start) / ITERATIONS / ops;
+        double allocated = (double) (allocatedBytes() - bytes) / ITERATIONS / ops;
+        System.out.printf("%-36s %14.1f ns/op %14.0f B/op %10.1f MB/s%n",
+                name, nanos, allocated, allocated / nanos * 1e3);
+    }
+
+    /**
+     * @return the bytes allocated so far by all live threads.
+     */
+    private static long allocatedBytes() {
+        long total = 0;
+        for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            // -1 for a thread that exited since its id was read
+            total += Math.max(bytes, 0);
+        }
+        return total;
+    }
+
+    private static boolean selected(String name) {
+        if (filters.length == 0) {
+            return true;
+        }
+        for (String filter : filters) {
+            if (name.startsWith(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void construction(String name, ImList<Point> points, ImList<ImList<Integer>> faces) {
+        bench(name, 1, () -> new Mesh(points, faces));
+    }
+
+    /**
+     * Times each Euler operator on an interior element of {@code mesh},
+     * each operation applied to the original mesh.
+     */
+    static void eulerOperators(String prefix, Mesh mesh) {
+        ImList<HalfEdge> edges = mesh.getHalfEdges();
+        HalfEdge edge = edges.get(edges.size() / 2);
+        Vertex vertex = edge.getVertex().get();
+        Face face = edge.getFace().get();
+        ImList<HalfEdge> loop = mesh.getFaceHalfEdges(face);
+        Vertex opposite = loop.get(2).getVertex().get();
+        Point p = edge.midpoint();
+        Mesh split = mesh.splitEdgeMakeVert(edge, p);
+        Vertex added = split.getVertices().get(split.getVertices().size() - 1);
+
+        bench(prefix + "moveVertex", 1, () -> mesh.moveVertex(vertex, p));
+        bench(prefix + "splitEdgeMakeVert", 1, () -> mesh.splitEdgeMakeVert(edge, p));
+        bench(prefix + "joinEdgeKillVert", 1, () -> split.joinEdgeKillVert(added));
+        bench(prefix + "splitFaceMakeEdge", 1,
+                () -> mesh.splitFaceMakeEdge(face, vertex, opposite));
+        bench(prefix + "joinFaceKillEdge", 1, () -> mesh.joinFaceKillEdge(edge));
+    }
+
+    static void queries(Mesh mesh) {
+        ImList<Face> faces = mesh.getFaces();
+        ImList<Vertex> vertices = mesh.getVertices();
+        ImList<HalfEdge> edges = mesh.getHalfEdges();
+        bench("query/getFaceHalfEdges", faces.size(), () -> {
+            int count = 0;
+            for (Face f : faces) {
+                count += mesh.getFaceHalfEdges(f).size();
+            }
+            return count;
+        });
+        bench("query/getVertexHalfEdges", vertices.size(), () -> {
+            int count = 0;
+            for (Vertex v : vertices) {
+                count += mesh.getVertexHalfEdges(v).size();
+            }
+            return count;
+        });
+        bench("query/HalfEdge.angle", edges.size(), () -> {
+            double sum = 0.0;
+            for (HalfEdge e : edges) {
+                sum += e.angle();
+            }
+            return sum;
+        });
+        bench("query/HalfEdge.length", edges.size(), () -> {
+            double sum = 0.0;
+            for (HalfEdge e : edges) {
+                sum += e.length();
+            }
+            return sum;
+        });
+        bench("query/Face.area", faces.size(), () -> {
+            double sum = 0.0;
+            for (Face f : faces) {
+                sum += f.area();
+            }
+            return sum;
+        });
+    }
+
+    /**
+     * Times bulk transforms of every vertex and of every fourth vertex,
+     * {@code mesh} being a 1000 side grid of about 1M vertices.
+     */
+    static void transforms(Mesh mesh) {
+        Transform t = Transform.rotation(0.1, new Point(500, 500)).then(Transform.scaling(2, 3));
+        ImList<Vertex> vertices = mesh.getVertices();
+        ArrayList<Vertex> quarter = new ArrayList<Vertex>();
+        for (int i = 0; i < vertices.size(); i += 4) {
+            quarter.add(vertices.get(i));
+        }
+        ImList<Vertex> selection = new ImList<Vertex>(quarter);
+        bench("transform/all", 1, () -> mesh.transform(t));
+        bench("transform/selected", 1, () -> mesh.transform(t, selection));
+    }
+
+    /**
+     * Times the {@code Visualiser} output of a mesh, discarding the bytes.
+     */
+    static void export(Mesh mesh) {
+        bench("export/visualiser", 1, () -> {
+            try (AsciiWriter writer = new AsciiWriter(OutputStream.nullOutputStream())) {
+                Visualiser.write(mesh, writer);
+            } catch (IOException e) {
+                throw new Error(e);
+            }
+            return mesh;
+        });
+    }
+
+    /**
+     * Builds a grid whose vertices and faces are numbered in random order,
+     * as after a long history of edits, and times traversal and export
+     * before and after {@code Mesh.reorder}.
+     */
+    static void layout(int side) {
+        Random random = new Random(SEED);
+        ImList<Point> grid = gridPoints(side);
+        int[] perm = new int[grid.size()];
+        for (int i = 0; i < perm.length; ++i) {
+            int j = random.nextInt(i + 1);
+            perm[i] = perm[j];
+            perm[j] = i;
+        }
+        Point[] points = new Point[grid.size()];
+        for (int i = 0; i < perm.length; ++i) {
+            points[perm[i]] = grid.get(i);
+        }
+        ArrayList<ImList<Integer>> faces = new ArrayList<ImList<Integer>>();
+        for (ImList<Integer> face : gridFaces(side)) {
+            ArrayList<Integer> polygon = new ArrayList<Integer>();
+            for (int v : face) {
+                polygon.add(perm[v]);
+            }
+            faces.add(new ImList<Integer>(polygon));
+        }
+        java.util.Collections.shuffle(faces, random);
+        Mesh shuffled = new Mesh(new ImList<Point>(List.of(points)), new ImList<ImList<Integer>>(faces));
+        bench("layout/reorder", 1, shuffled::reorder);
+        Mesh reordered = shuffled.reorder();
+        traverse("layout/shuffled/", shuffled);
+        traverse("layout/reordered/", reordered);
+    }
+
+    /**
+     * Times a walk over each face, its vertices and its neighbouring faces,
+     * and the {@code Visualiser} output of {@code mesh}.
+     */
+    static void traverse(String prefix, Mesh mesh) {
+        bench(prefix + "traverse", mesh.halfEdgeCount(), () -> {
+            double[] sum = { 0.0 };
+            for (int f = 0; f < mesh.faceCount(); ++f) {
+                mesh.forEachFaceHalfEdge(f, e -> {
+                    sum[0] += mesh.point(mesh.vertex(e)).getX();
+                    int neighbour = mesh.face(mesh.twin(e));
+                    if (neighbour != -1) {
+                        sum[0] += mesh.faceHalfEdge(neighbour);
+                    }
+                });
+            }
+            return sum[0];
+        });
+        bench(prefix + "export", 1, () -> {
+            try (AsciiWriter writer = new AsciiWriter(OutputStream.nullOutputStream())) {
+                Visualiser.write(mesh, writer);
+            } catch (IOException e) {
+                throw new Error(e);
+            }
+            return mesh;
+        });
+    }
+
+    /**
+     * Times a {@code MeshBinary} round trip of a grid,
+     * {@code side} 500 giving about 1M half-edges.
+     */
+    static void binary(int side) throws IOException {
+        Mesh mesh = new Mesh(gridPoints(side), gridFaces(side));
+        Path path = Files.createTempFile("mesh", ".bin");
+        try {
+            bench("binary/write", 1, () -> {
+                try {
+                    MeshBinary.write(mesh, path);
+                } catch (IOException e) {
+                    throw new Error(e);
+                }
+                return path;
+            });
+            bench("binary/read", 1, () -> {
+                try {
+                    return MeshBinary.read(path);
+                } catch (IOException e) {
+                    throw new Error(e);
+                }
+            });
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Reads and writes a {@code Mesh} in a compact binary half-edge format
+ * through memory-mapped files.
+ * The file stores the connectivity as it is, so reading it back does not
+ * re-derive twins or boundary loops and element ids are preserved.
+ * <p>
+ * All values are little-endian. The layout is a header of six ints
+ * (magic {@code "HSDE"}, version, vertex count, face count, half-edge count,
+ * and zero padding) followed by these arrays, each indexed by id:
+ * vertex x and y as doubles, the half-edge of each vertex, the half-edge of
+ * each face, and the vertex, face, twin, next and prev of each half-edge.
+ * Killed elements are stored as -2 in the vertex, face and half-edge vertex
+ * arrays; -1 marks an absent reference as in the mesh itself.
+ * Version 2 appends the free slots of vertices, faces and half-edges, each
+ * as a count followed by the slots in the order they will be reused, so
+ * that operators applied to the mesh read back assign the same ids as
+ * they would on the mesh written. Version 1 files, without them, are read
+ * with their killed slots free in id order.
+ */
+public class MeshBinary {
+    private static final int MAGIC = 0x48534445;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    private MeshBinary() {
+    }
+
+    public static void write(Mesh mesh, Path path) throws IOException {
+        MeshBinary.write(mesh, path, false);
+    }
+
+    /**
+     * Writes {@code mesh} to {@code path}, and with {@code force} set also
+     * forces the mapped contents and the file to storage before returning,
+     * so that the file is complete even after an operating system crash.
+     */
+    public static void write(Mesh mesh, Path path, boolean force) throws IOException {
+        int numVertices = mesh.vertexCount();
+        int numFaces = mesh.faceCount();
+        int numEdges = mesh.halfEdgeCount();
+        double[] xs = new double[numVertices];
+        double[] ys = new double[numVertices];
+        int[] vertexEdge = new int[numVertices];
+        for (int v = 0; v < numVertices; ++v) {
+            if (mesh.isLiveVertex(v)) {
+                Point p = mesh.point(v);
+                xs[v] = p.getX();
+                ys[v] = p.getY();
+                vertexEdge[v] = mesh.vertexHalfEdge(v);
+            } else {
+                vertexEdge[v] = MeshKernel.DEAD;
+            }
+        }
+        int[] faceEdge = new int[numFaces];
+        for (int f = 0; f < numFaces; ++f) {
+            faceEdge[f] = mesh.isLiveFace(f) ? mesh.faceHalfEdge(f) : MeshKernel.DEAD;
+        }
+        int[] edgeVertex = new int[numEdges];
+        int[] edgeFace = new int[numEdges];
+        int[] twin = new int[numEdges];
+        int[] next = new int[numEdges];
+        int[] prev = new int[numEdges];
+        for (int e = 0; e < numEdges; ++e) {
+            if (mesh.isLiveHalfEdge(e)) {
+                edgeVertex[e] = mesh.vertex(e);
+                edgeFace[e] = mesh.face(e);
+                twin[e] = mesh.twin(e);
+                next[e] = mesh.next(e);
+                prev[e] = mesh.prev(e);
+            } else {
+                edgeVertex[e] = MeshKernel.DEAD;
+                edgeFace[e] = twin[e] = next[e] = prev[e] = -1;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            List<MappedByteBuffer> mapped = new ArrayList<MappedByteBuffer>();
+            long offset = 0;
+            ByteBuffer header = mapForWrite(channel, offset, HEADER_BYTES, mapped);
+            header.putInt(MAGIC).putInt(VERSION)
+                .putInt(numVertices).putInt(numFaces).putInt(numEdges).putInt(0);
+            offset += HEADER_BYTES;
+            for (double[] array : new double[][] { xs, ys }) {
+                long bytes = (long) array.length * Double.BYTES;
+                mapForWrite(channel, offset, bytes, mapped).asDoubleBuffer().put(array);
+                offset += bytes;
+            }
+            for (int[] array : new int[][] { vertexEdge, faceEdge,
+                    edgeVertex, edgeFace, twin, next, prev }) {
+                long bytes = (long) array.length * Integer.BYTES;
+                mapForWrite(channel, offset, bytes, mapped).asIntBuffer().put(array);
+                offset += bytes;
+            }
+            for (int[] slots : new int[][] { mesh.freeVertexSlots(), mesh.freeFaceSlots(),
+                    mesh.freeHalfEdgeSlots() }) {
+                long bytes = (long) (slots.length + 1) * Integer.BYTES;
+                mapForWrite(channel, offset, bytes, mapped)
+                    .asIntBuffer().put(slots.length).put(slots);
+                offset += bytes;
+            }
+            if (force) {
+                // changes through a mapping are not covered by channel.force alone
+                for (MappedByteBuffer buffer : mapped) {
+                    buffer.force();
+                }
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Reads a mesh written by {@code write}. The mesh is checked
+     * if validation is set to {@code FULL}.
+     *
+     * @throws IOException if the file is not in this format or is truncated.
+     */
+    public static Mesh read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Not a binary mesh: " + path);
+            }
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a binary mesh: " + path);
+            }
+            int version = header.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported binary mesh version " + version);
+            }
+            int numVertices = header.getInt();
+            int numFaces = header.getInt();
+            int numEdges = header.getInt();
+            long arrayBytes = HEADER_BYTES
+                + (long) numVertices * (2 * Double.BYTES + Integer.BYTES)
+                + (long) numFaces * Integer.BYTES + (long) numEdges * 5 * Integer.BYTES;
+            if (numVertices < 0 || numFaces < 0 || numEdges < 0 || (version == 1
+                        ? size != arrayBytes : size < arrayBytes + 3 * Integer.BYTES)) {
+                throw new IOException("Truncated binary mesh: " + path);
+            }
+
+            long offset = HEADER_BYTES;
+            double[] xs = new double[numVertices];
+            double[] ys = new double[numVertices];
+            for (double[] array : new double[][] { xs, ys }) {
+                long bytes = (long) array.length * Double.BYTES;
+                map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes)
+                    .asDoubleBuffer().get(array);
+                offset += bytes;
+            }
+            int[] vertexEdge = new int[numVertices];
+            int[] faceEdge = new int[numFaces];
+            int[] edgeVertex = new int[numEdges];
+            int[] edgeFace = new int[numEdges];
+            int[] twin = new int[numEdges];
+            int[] next = new int[numEdges];
+            int[] prev = new int[numEdges];
+            for (int[] array : new int[][] { vertexEdge, faceEdge,
+                    edgeVertex, edgeFace, twin, next, prev }) {
+                long bytes = (long) array.length * Integer.BYTES;
+                map(channel, FileChannel.MapMode.READ_ONLY, offset, bytes)
+                    .asIntBuffer().get(array);
+                offset += bytes;
+            }
+
+            int[][] free = null;
+            if (version != 1) {
+                free = new int[3][];
+                for (int i = 0; i < free.length; ++i) {
+                    free[i] = MeshBinary.readSlots(channel, offset, size, path);
+                    offset += (long) (free[i].length + 1) * Integer.BYTES;
+                }
+                if (offset != size) {
+                    throw new IOException("Truncated binary mesh: " + path);
+                }
+                MeshBinary.checkSlots(free[0], vertexEdge, "vertex", path);
+                MeshBinary.checkSlots(free[1], faceEdge, "face", path);
+                MeshBinary.checkSlots(free[2], edgeVertex, "half-edge", path);
+            }
+            Mesh mesh = new MeshKernel(xs, ys, vertexEdge, faceEdge,
+                    edgeVertex, edgeFace, twin, next, prev).toMesh();
+            if (free != null) {
+                mesh = mesh.withFreeSlots(free[0], free[1], free[2]);
+            }
+            if (Mesh.getValidation() == Validation.FULL) {
+                mesh.check();
+            }
+            return mesh;
+        }
+    }
+
+    private static int[] readSlots(FileChannel channel, long offset, long size, Path path)
+            throws IOException {
+        if (offset + Integer.BYTES > size) {
+            throw new IOException("Truncated binary mesh: " + path);
+        }
+        int count = map(channel, FileChannel.MapMode.READ_ONLY, offset, Integer.BYTES).getInt();
+        if (count < 0 || offset + (long) (count + 1) * Integer.BYTES > size) {
+            throw new IOException("Truncated binary mesh: " + path);
+        }
+        int[] slots = new int[count];
+        map(channel, FileChannel.MapMode.READ_ONLY, offset + Integer.BYTES,
+                (long) count * Integer.BYTES).asIntBuffer().get(slots);
+        return slots;
+    }
+
+    /**
+     * Checks that each free slot is in range, killed in {@code ids} and
+     * listed once, since reusing a live or duplicate slot would silently
+     * overwrite an element.
+     */
+    private static void checkSlots(int[] slots, int[] ids, String kind, Path path)
+            throws IOException {
+        BitSet seen = new BitSet(ids.length);
+        for (int slot : slots) {
+            if (slot < 0 || slot >= ids.length || ids[slot] != MeshKernel.DEAD
+                    || seen.get(slot)) {
+                throw new IOException("Invalid free " + kind + " slot " + slot + ": " + path);
+            }
+            seen.set(slot);
+        }
+    }
+
+    private static ByteBuffer mapForWrite(FileChannel channel, long offset, long bytes,
+            List<MappedByteBuffer> mapped) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, bytes);
+        mapped.add(buffer);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Maps each array separately, so no single mapping
+     * has to cover the whole file.
+     */
+    private static ByteBuffer map(FileChannel channel, FileChannel.MapMode mode,
+            long offset, long bytes) throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, offset, bytes);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
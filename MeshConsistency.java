@@ -0,0 +1,685 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+
+/**
+ * Randomized cross-checks of mesh code paths that must agree with each other.
+ * Run with {@code java MeshConsistency [name...]}, where the optional names
+ * select the checks whose names start with one of them. Each check prints
+ * what it compared and throws an {@code Error} on the first disagreement.
+ * <ul>
+ * <li>{@code validation}: {@code INCREMENTAL} and {@code FULL} validation
+ *     reject exactly the same edits.
+ * <li>{@code oracle}: each Euler operator gives the polygons worked out
+ *     by hand for a small mesh.
+ * <li>{@code persistent}: the Euler operators of a {@code MeshEditor}
+ *     match the same operators run on a {@code MeshKernel}, and every
+ *     earlier version of the mesh is left unchanged.
+ * <li>{@code parallel}: {@code Mesh.parallel} writes the same
+ *     {@code MeshBinary} bytes as the OBJ constructor.
+ * <li>{@code delta}: compacting a {@code DeltaExporter} log gives the same
+ *     {@code mesh.out} as a full export of the last mesh.
+ * </ul>
+ */
+class MeshConsistency {
+    private static final long SEED = 2030;
+    private static final int SEQUENCES = 300;
+    private static final int STEPS = 200;
+
+    private static String[] filters = new String[0];
+
+    public static void main(String[] args) throws IOException {
+        // the parallel build only splits work across the common pool if it has threads
+        if (System.getProperty("java.util.concurrent.ForkJoinPool.common.parallelism") == null) {
+            System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "4");
+        }
+        filters = args;
+        Validation validation = Mesh.getValidation();
+        try {
+            if (selected("validation")) {
+                validation();
+            }
+            if (selected("oracle")) {
+                oracle();
+            }
+            if (selected("persistent")) {
+                persistent();
+            }
+            if (selected("parallel")) {
+                parallel();
+            }
+            if (selected("delta")) {
+                delta();
+            }
+        } finally {
+            Mesh.setValidation(validation);
+        }
+    }
+
+    private static boolean selected(String name) {
+        if (filters.length == 0) {
+            return true;
+        }
+        for (String filter : filters) {
+            if (name.startsWith(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A random Euler operator with its arguments, as ids and coordinates,
+     * so that it can be applied to any {@code HalfEdgeOps}.
+     */
+    private static final class Edit {
+        final int op;
+        final int a;
+        final int b;
+        final int c;
+        final double x;
+        final double y;
+
+        Edit(int op, int a, int b, int c, double x, double y) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * @return whether the operator applied.
+         */
+        boolean apply(HalfEdgeOps ops) {
+            switch (this.op) {
+                case 0:
+                    return ops.moveVertex(this.a, this.x, this.y);
+                case 1:
+                    return ops.splitEdgeMakeVert(this.a, this.x, this.y) != -1;
+                case 2:
+                    return ops.joinEdgeKillVert(this.a);
+                case 3:
+                    return ops.splitFaceMakeEdge(this.a, this.b, this.c) != -1;
+                default:
+                    return ops.joinFaceKillEdge(this.a);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "op " + this.op + " (" + this.a + ", " + this.b + ", " + this.c + ")";
+        }
+    }
+
+    /**
+     * Picks an operator and arguments that mostly refer to live elements of
+     * {@code ops}, so that most edits apply. Faces are split between two
+     * of their own vertices, and new points are placed near the edge or
+     * vertex they belong to.
+     */
+    static Edit randomEdit(HalfEdgeOps ops, Random random) {
+        int op = random.nextInt(5);
+        double dx = 0.2 * (random.nextDouble() - 0.5);
+        double dy = 0.2 * (random.nextDouble() - 0.5);
+        if (op == 0 || op == 2) {
+            int v = randomLive(ops.vertexCount(), random, ops::isLiveVertex);
+            double x = v == -1 ? 0.0 : ops.x(v);
+            double y = v == -1 ? 0.0 : ops.y(v);
+            return new Edit(op, v, -1, -1, x + dx, y + dy);
+        }
+        if (op == 3) {
+            int f = randomLive(ops.faceCount(), random, ops::isLiveFace);
+            if (f == -1 || ops.faceHalfEdge(f) == -1) {
+                return new Edit(op, f, -1, -1, 0.0, 0.0);
+            }
+            int size = ops.faceSize(f);
+            int start = ops.faceHalfEdge(f);
+            int e1 = start;
+            for (int i = random.nextInt(size); i > 0; --i) {
+                e1 = ops.next(e1);
+            }
+            int e2 = start;
+            for (int i = random.nextInt(size); i > 0; --i) {
+                e2 = ops.next(e2);
+            }
+            return new Edit(op, f, ops.vertex(e1), ops.vertex(e2), 0.0, 0.0);
+        }
+        int e = randomLive(ops.halfEdgeCount(), random, ops::isLiveHalfEdge);
+        if (e == -1) {
+            return new Edit(op, e, -1, -1, 0.0, 0.0);
+        }
+        int v1 = ops.vertex(e);
+        int v2 = ops.vertex(ops.twin(e));
+        return new Edit(op, e, -1, -1, (ops.x(v1) + ops.x(v2)) / 2 + dx,
+                (ops.y(v1) + ops.y(v2)) / 2 + dy);
+    }
+
+    private static int randomLive(int n, Random random, IntPredicate live) {
+        for (int tries = 0; n > 0 && tries < 16; ++tries) {
+            int id = random.nextInt(n);
+            if (live.test(id)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Applies each random edit to the same mesh under {@code INCREMENTAL}
+     * and under {@code FULL} validation, and requires both to accept or
+     * both to reject it. A rejected edit is dropped, so that every edit
+     * starts from a valid mesh, as incremental validation assumes.
+     */
+    static void validation() {
+        Random random = new Random(SEED);
+        int rejected = 0;
+        int steps = 0;
+        for (int s = 0; s < SEQUENCES; ++s) {
+            Mesh mesh = new Mesh(MeshBenchmark.jitteredPoints(4, random),
+                    MeshBenchmark.randomFaces(4, random));
+            for (int step = 0; step < STEPS; ++step, ++steps) {
+                Edit edit = randomEdit(mesh.edit(), random);
+                Mesh.setValidation(Validation.INCREMENTAL);
+                Mesh incremental = commit(mesh, edit);
+                Mesh.setValidation(Validation.FULL);
+                Mesh full = commit(mesh, edit);
+                if ((incremental == null) != (full == null)) {
+                    throw new Error("validation: " + edit + " was rejected only by "
+                            + (full == null ? "full" : "incremental") + " validation"
+                            + " in sequence " + s + ", step " + step);
+                }
+                if (full == null) {
+                    ++rejected;
+                } else {
+                    mesh = full;
+                }
+            }
+        }
+        System.out.printf("%-12s %d edits, %d rejected by both, none by only one%n",
+                "validation", steps, rejected);
+    }
+
+    /**
+     * @return the edit of {@code mesh} as committed, or null if its validation failed.
+     */
+    private static Mesh commit(Mesh mesh, Edit edit) {
+        MeshEditor editor = mesh.edit();
+        edit.apply(editor);
+        return commit(editor);
+    }
+
+    private static Mesh commit(MeshEditor editor) {
+        try {
+            return editor.commit();
+        } catch (Error e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies each Euler operator to a strip of two unit quads and compares
+     * the result with polygons worked out by hand, so that a bug shared by
+     * {@code MeshEditor} and {@code MeshKernel} through {@code HalfEdgeOps}
+     * is still caught. Operators that must not apply have to return the
+     * mesh unchanged, and the strip itself must be untouched at the end.
+     */
+    static void oracle() {
+        Mesh.setValidation(Validation.FULL);
+        Mesh strip = new Mesh(new ImList<Point>(List.of(new Point(0, 0), new Point(1, 0),
+                        new Point(2, 0), new Point(0, 1), new Point(1, 1), new Point(2, 1))),
+                new ImList<ImList<Integer>>(List.of(new ImList<Integer>(List.of(0, 1, 4, 3)),
+                        new ImList<Integer>(List.of(1, 2, 5, 4)))));
+        String left = polygon(0, 0, 1, 0, 1, 1, 0, 1);
+        String right = polygon(1, 0, 2, 0, 2, 1, 1, 1);
+        expect("construction", strip, 6, 14, left, right);
+
+        Mesh split = strip.splitEdgeMakeVert(halfEdge(strip, 0, 0, 1, 0), new Point(0.5, 0));
+        expect("splitEdgeMakeVert", split, 7, 16, polygon(0, 0, 0.5, 0, 1, 0, 1, 1, 0, 1), right);
+        expect("joinEdgeKillVert", split.joinEdgeKillVert(vertex(split, 0.5, 0)), 6, 14,
+                left, right);
+        expect("joinEdgeKillVert/corner", strip.joinEdgeKillVert(vertex(strip, 0, 0)), 5, 12,
+                polygon(1, 0, 1, 1, 0, 1), right);
+
+        Mesh diagonal = strip.splitFaceMakeEdge(face(strip, 0, 0, 1, 0), vertex(strip, 0, 0),
+                vertex(strip, 1, 1));
+        expect("splitFaceMakeEdge", diagonal, 6, 16,
+                polygon(0, 0, 1, 0, 1, 1), polygon(0, 0, 1, 1, 0, 1), right);
+        expect("joinFaceKillEdge/diagonal", diagonal.joinFaceKillEdge(
+                    halfEdge(diagonal, 0, 0, 1, 1)), 6, 14, left, right);
+
+        Mesh joined = strip.joinFaceKillEdge(halfEdge(strip, 1, 0, 1, 1));
+        String hexagon = polygon(0, 0, 1, 0, 2, 0, 2, 1, 1, 1, 0, 1);
+        expect("joinFaceKillEdge", joined, 6, 12, hexagon);
+        expect("joinEdgeKillVert/joined", joined.joinEdgeKillVert(vertex(joined, 1, 0)), 5, 10,
+                polygon(0, 0, 2, 0, 2, 1, 1, 1, 0, 1));
+
+        expect("moveVertex", strip.moveVertex(vertex(strip, 2, 1), new Point(3, 2)), 6, 14,
+                left, polygon(1, 0, 2, 0, 3, 2, 1, 1));
+
+        Face triangle = face(diagonal, 0, 0, 1, 0);
+        if (diagonal.splitFaceMakeEdge(triangle, vertex(diagonal, 0, 0),
+                    vertex(diagonal, 1, 0)) != diagonal
+                || strip.joinFaceKillEdge(halfEdge(strip, 0, 0, 1, 0)) != strip
+                || joined.joinFaceKillEdge(halfEdge(joined, 0, 0, 1, 0)) != joined) {
+            throw new Error("oracle: an operator that must not apply changed the mesh");
+        }
+        expect("persistence", strip, 6, 14, left, right);
+        System.out.printf("%-12s every operator matches hand-computed polygons%n", "oracle");
+    }
+
+    /**
+     * Requires {@code mesh} to be valid, with the given numbers of live
+     * vertices and half-edges, and with exactly the given face polygons.
+     */
+    private static void expect(String name, Mesh mesh, int vertices, int halfEdges,
+            String... polygons) {
+        mesh.check();
+        List<String> actual = new ArrayList<String>();
+        for (int f = 0; f < mesh.faceCount(); ++f) {
+            if (!mesh.isLiveFace(f) || mesh.faceHalfEdge(f) == -1) {
+                continue;
+            }
+            List<Double> xy = new ArrayList<Double>();
+            int start = mesh.faceHalfEdge(f);
+            int e = start;
+            do {
+                xy.add(mesh.point(mesh.vertex(e)).getX());
+                xy.add(mesh.point(mesh.vertex(e)).getY());
+                e = mesh.next(e);
+            } while (e != start);
+            actual.add(polygon(xy.stream().mapToDouble(Double::doubleValue).toArray()));
+        }
+        List<String> expected = new ArrayList<String>(Arrays.asList(polygons));
+        Collections.sort(actual);
+        Collections.sort(expected);
+        int liveVertices = 0;
+        for (int v = 0; v < mesh.vertexCount(); ++v) {
+            liveVertices += mesh.isLiveVertex(v) ? 1 : 0;
+        }
+        int liveEdges = 0;
+        for (int e = 0; e < mesh.halfEdgeCount(); ++e) {
+            liveEdges += mesh.isLiveHalfEdge(e) ? 1 : 0;
+        }
+        if (!actual.equals(expected) || liveVertices != vertices || liveEdges != halfEdges) {
+            throw new Error("oracle: " + name + " gave " + liveVertices + " vertices, "
+                    + liveEdges + " half-edges and faces " + actual + ", expected " + vertices
+                    + ", " + halfEdges + " and " + expected);
+        }
+    }
+
+    /**
+     * @return the polygon through the points {@code x0, y0, x1, y1, ...},
+     *     in order, written from its lowest point so equal loops compare equal.
+     */
+    private static String polygon(double... xy) {
+        int n = xy.length / 2;
+        int first = 0;
+        for (int i = 1; i < n; ++i) {
+            if (xy[2 * i] < xy[2 * first]
+                    || xy[2 * i] == xy[2 * first] && xy[2 * i + 1] < xy[2 * first + 1]) {
+                first = i;
+            }
+        }
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            int j = (first + i) % n;
+            s.append('(').append(xy[2 * j]).append(", ").append(xy[2 * j + 1]).append(')');
+        }
+        return s.toString();
+    }
+
+    private static Vertex vertex(Mesh mesh, double x, double y) {
+        for (int v = 0; v < mesh.vertexCount(); ++v) {
+            if (mesh.isLiveVertex(v) && mesh.point(v).getX() == x && mesh.point(v).getY() == y) {
+                return mesh.getVertex(v).get();
+            }
+        }
+        throw new Error("oracle: no vertex at " + x + ", " + y);
+    }
+
+    /**
+     * @return the half-edge from (x1, y1) to (x2, y2).
+     */
+    private static HalfEdge halfEdge(Mesh mesh, double x1, double y1, double x2, double y2) {
+        for (int e = 0; e < mesh.halfEdgeCount(); ++e) {
+            if (!mesh.isLiveHalfEdge(e)) {
+                continue;
+            }
+            Point p = mesh.point(mesh.vertex(e));
+            Point q = mesh.point(mesh.vertex(mesh.twin(e)));
+            if (p.getX() == x1 && p.getY() == y1 && q.getX() == x2 && q.getY() == y2) {
+                return mesh.getHalfEdge(e).get();
+            }
+        }
+        throw new Error("oracle: no half-edge from " + x1 + ", " + y1 + " to " + x2 + ", " + y2);
+    }
+
+    /**
+     * @return the face to the left of the half-edge from (x1, y1) to (x2, y2).
+     */
+    private static Face face(Mesh mesh, double x1, double y1, double x2, double y2) {
+        return halfEdge(mesh, x1, y1, x2, y2).getFace().get();
+    }
+
+    /**
+     * Applies random edits through a {@code MeshEditor}, one commit each, and
+     * the same edits to a {@code MeshKernel} copied from the mesh before
+     * the edit. Both must apply the same edits, and {@code FULL} validation
+     * must reject exactly the edits after which the kernel fails
+     * {@code check}; rejected edits are dropped. The editor reuses free
+     * slots where the kernel appends, so the elements an edit creates are
+     * matched up before comparing; all other elements must have the same
+     * ids. Every version is kept and compared again against a copy taken
+     * when it was made, once the sequence is done.
+     */
+    static void persistent() {
+        Mesh.setValidation(Validation.FULL);
+        Random random = new Random(SEED);
+        int applied = 0;
+        int rejected = 0;
+        for (int s = 0; s < SEQUENCES; ++s) {
+            Mesh mesh = new Mesh(MeshBenchmark.jitteredPoints(4, random),
+                    MeshBenchmark.randomFaces(4, random));
+            List<Mesh> versions = new ArrayList<Mesh>();
+            List<Mesh> copies = new ArrayList<Mesh>();
+            MeshEditor editor = mesh.edit();
+            for (int step = 0; step < STEPS; ++step) {
+                Edit edit = randomEdit(editor, random);
+                MeshKernel kernel = MeshKernel.of(mesh);
+                boolean kernelApplied = edit.apply(kernel);
+                if (edit.apply(editor) != kernelApplied) {
+                    throw new Error("persistent: " + edit + " applied to only one of"
+                            + " editor and kernel in sequence " + s + ", step " + step);
+                }
+                Mesh next = commit(editor);
+                if ((next == null) != !isValid(kernel)) {
+                    throw new Error("persistent: " + edit + " failed validation on only one of"
+                            + " editor and kernel in sequence " + s + ", step " + step);
+                }
+                if (next == null) {
+                    ++rejected;
+                    editor = mesh.edit();
+                    continue;
+                }
+                if (!sameAfterEdit(mesh, next, kernel)) {
+                    throw new Error("persistent: " + edit + " gave different meshes"
+                            + " in sequence " + s + ", step " + step);
+                }
+                versions.add(next);
+                copies.add(MeshKernel.of(next).toMesh());
+                applied += kernelApplied ? 1 : 0;
+                mesh = next;
+            }
+            for (int i = 0; i < versions.size(); ++i) {
+                if (!sameIds(versions.get(i), copies.get(i))) {
+                    throw new Error("persistent: version " + i + " of sequence " + s
+                            + " changed after later edits");
+                }
+            }
+        }
+        System.out.printf("%-12s %d sequences, %d edits applied, %d rejected by both,"
+                + " editor matches kernel%n", "persistent", SEQUENCES, applied, rejected);
+    }
+
+    private static boolean isValid(MeshKernel kernel) {
+        try {
+            kernel.check();
+            return true;
+        } catch (Error e) {
+            return false;
+        }
+    }
+
+    /**
+     * Compares {@code after}, an edit of {@code before}, with {@code kernel},
+     * the same edit applied to a copy of {@code before}. Ids of elements
+     * that were live in {@code before} must match; each new element of
+     * {@code after} is matched to a new element of the kernel, trying
+     * both orders for the two half-edges an edit can create.
+     */
+    private static boolean sameAfterEdit(Mesh before, Mesh after, MeshKernel kernel) {
+        int[] vertexMap = createdMap(before.vertexCount(), after.vertexCount(),
+                before::isLiveVertex, after::isLiveVertex, kernel.vertexCount());
+        int[] faceMap = createdMap(before.faceCount(), after.faceCount(),
+                before::isLiveFace, after::isLiveFace, kernel.faceCount());
+        int[] edgeMap = createdMap(before.halfEdgeCount(), after.halfEdgeCount(),
+                before::isLiveHalfEdge, after::isLiveHalfEdge, kernel.halfEdgeCount());
+        if (vertexMap == null || faceMap == null || edgeMap == null) {
+            return false;
+        }
+        if (same(after, kernel, vertexMap, faceMap, edgeMap)) {
+            return true;
+        }
+        // two new half-edges may have been created in either order relative to the slots
+        int first = -1;
+        int second = -1;
+        for (int e = 0; e < edgeMap.length; ++e) {
+            if (edgeMap[e] >= before.halfEdgeCount() && first == -1) {
+                first = e;
+            } else if (edgeMap[e] >= before.halfEdgeCount()) {
+                second = e;
+            }
+        }
+        if (second == -1) {
+            return false;
+        }
+        int swap = edgeMap[first];
+        edgeMap[first] = edgeMap[second];
+        edgeMap[second] = swap;
+        return same(after, kernel, vertexMap, faceMap, edgeMap);
+    }
+
+    /**
+     * Maps the ids of {@code after} to kernel ids: unchanged for elements
+     * live before the edit, and in increasing order onto the ids the kernel
+     * appended for the elements the edit created. Dead ids map to themselves.
+     *
+     * @return null if the edit created a different number of elements.
+     */
+    private static int[] createdMap(int beforeCount, int afterCount,
+            IntPredicate liveBefore, IntPredicate liveAfter,
+            int kernelCount) {
+        int[] map = new int[afterCount];
+        int created = beforeCount;
+        for (int id = 0; id < afterCount; ++id) {
+            boolean wasLive = id < beforeCount && liveBefore.test(id);
+            map[id] = !liveAfter.test(id) || wasLive ? id : created++;
+        }
+        return created == kernelCount ? map : null;
+    }
+
+    private static boolean same(Mesh mesh, MeshKernel kernel, int[] vertexMap, int[] faceMap,
+            int[] edgeMap) {
+        int live = 0;
+        for (int v = 0; v < mesh.vertexCount(); ++v) {
+            if (!mesh.isLiveVertex(v)) {
+                continue;
+            }
+            ++live;
+            int k = vertexMap[v];
+            Point p = mesh.point(v);
+            if (!kernel.isLiveVertex(k) || p.getX() != kernel.x(k) || p.getY() != kernel.y(k)
+                    || map(edgeMap, mesh.vertexHalfEdge(v)) != kernel.vertexHalfEdge(k)) {
+                return false;
+            }
+        }
+        for (int k = 0; k < kernel.vertexCount(); ++k) {
+            live -= kernel.isLiveVertex(k) ? 1 : 0;
+        }
+        for (int f = 0; f < mesh.faceCount(); ++f) {
+            if (!mesh.isLiveFace(f)) {
+                continue;
+            }
+            ++live;
+            int k = faceMap[f];
+            if (!kernel.isLiveFace(k)
+                    || map(edgeMap, mesh.faceHalfEdge(f)) != kernel.faceHalfEdge(k)) {
+                return false;
+            }
+        }
+        for (int k = 0; k < kernel.faceCount(); ++k) {
+            live -= kernel.isLiveFace(k) ? 1 : 0;
+        }
+        for (int e = 0; e < mesh.halfEdgeCount(); ++e) {
+            if (!mesh.isLiveHalfEdge(e)) {
+                continue;
+            }
+            ++live;
+            int k = edgeMap[e];
+            if (!kernel.isLiveHalfEdge(k)
+                    || map(vertexMap, mesh.vertex(e)) != kernel.vertex(k)
+                    || map(faceMap, mesh.face(e)) != kernel.face(k)
+                    || map(edgeMap, mesh.twin(e)) != kernel.twin(k)
+                    || map(edgeMap, mesh.next(e)) != kernel.next(k)
+                    || map(edgeMap, mesh.prev(e)) != kernel.prev(k)) {
+                return false;
+            }
+        }
+        for (int k = 0; k < kernel.halfEdgeCount(); ++k) {
+            live -= kernel.isLiveHalfEdge(k) ? 1 : 0;
+        }
+        return live == 0;
+    }
+
+    private static int map(int[] map, int id) {
+        return id < 0 || id >= map.length ? id : map[id];
+    }
+
+    private static boolean sameIds(Mesh a, Mesh b) {
+        int[] vertices = identity(a.vertexCount());
+        int[] faces = identity(a.faceCount());
+        int[] edges = identity(a.halfEdgeCount());
+        return a.vertexCount() == b.vertexCount() && a.faceCount() == b.faceCount()
+            && a.halfEdgeCount() == b.halfEdgeCount()
+            && same(a, MeshKernel.of(b), vertices, faces, edges);
+    }
+
+    private static int[] identity(int n) {
+        int[] map = new int[n];
+        for (int id = 0; id < n; ++id) {
+            map[id] = id;
+        }
+        return map;
+    }
+
+    /**
+     * Builds meshes both sequentially and in parallel and compares their
+     * {@code MeshBinary} files byte for byte: grids, random polygon meshes,
+     * grids with random cells left out, which leaves holes, bowtie
+     * vertices and isolated vertices, and the empty mesh.
+     * Run with more than one thread in the common pool, as {@code main}
+     * sets by default; the meshes are large enough to be split.
+     */
+    static void parallel() throws IOException {
+        Random random = new Random(SEED);
+        List<String> names = new ArrayList<String>();
+        List<ImList<Point>> points = new ArrayList<ImList<Point>>();
+        List<ImList<ImList<Integer>>> faces = new ArrayList<ImList<ImList<Integer>>>();
+        for (int side : new int[] { 1, 10, 300 }) {
+            names.add("grid/" + side);
+            points.add(MeshBenchmark.gridPoints(side));
+            faces.add(MeshBenchmark.gridFaces(side));
+            names.add("random/" + side);
+            points.add(MeshBenchmark.jitteredPoints(side, random));
+            faces.add(MeshBenchmark.randomFaces(side, random));
+            names.add("holes/" + side);
+            points.add(MeshBenchmark.gridPoints(side));
+            faces.add(withHoles(MeshBenchmark.gridFaces(side), random));
+        }
+        names.add("empty");
+        points.add(new ImList<Point>());
+        faces.add(new ImList<ImList<Integer>>());
+
+        Path sequential = Files.createTempFile("sequential", ".bin");
+        Path parallel = Files.createTempFile("parallel", ".bin");
+        try {
+            for (int i = 0; i < names.size(); ++i) {
+                MeshBinary.write(new Mesh(points.get(i), faces.get(i)), sequential);
+                MeshBinary.write(Mesh.parallel(points.get(i), faces.get(i)), parallel);
+                if (!Arrays.equals(Files.readAllBytes(sequential), Files.readAllBytes(parallel))) {
+                    throw new Error("parallel: " + names.get(i) + " differs from the sequential build");
+                }
+            }
+        } finally {
+            Files.delete(sequential);
+            Files.delete(parallel);
+        }
+        System.out.printf("%-12s %d meshes on %d threads, identical to sequential%n",
+                "parallel", names.size(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Leaves out about a third of the cells.
+     */
+    private static ImList<ImList<Integer>> withHoles(ImList<ImList<Integer>> faces,
+            Random random) {
+        ArrayList<ImList<Integer>> kept = new ArrayList<ImList<Integer>>();
+        for (ImList<Integer> face : faces) {
+            if (random.nextInt(3) != 0) {
+                kept.add(face);
+            }
+        }
+        return new ImList<ImList<Integer>>(kept);
+    }
+
+    /**
+     * Applies random edits, exporting every few of them to a delta log,
+     * compacts the log at random points, and compares each compacted
+     * output with a full export of the mesh last exported.
+     */
+    static void delta() throws IOException {
+        Mesh.setValidation(Validation.OFF);
+        Random random = new Random(SEED);
+        Path log = Files.createTempFile("mesh", ".delta");
+        Path compacted = Files.createTempFile("compacted", ".out");
+        Path full = Files.createTempFile("full", ".out");
+        int compactions = 0;
+        try {
+            for (int s = 0; s < SEQUENCES / 10; ++s) {
+                DeltaExporter exporter = new DeltaExporter(log);
+                Mesh mesh = new Mesh(MeshBenchmark.jitteredPoints(10, random),
+                        MeshBenchmark.randomFaces(10, random));
+                exporter.export(mesh);
+                for (int step = 1; step <= 500; ++step) {
+                    MeshEditor editor = mesh.edit();
+                    randomEdit(editor, random).apply(editor);
+                    mesh = editor.commit();
+                    if (step % 7 != 0) {
+                        continue;
+                    }
+                    exporter.export(mesh);
+                    if (random.nextInt(10) != 0) {
+                        continue;
+                    }
+                    DeltaExporter.compact(log, compacted);
+                    try (AsciiWriter writer = new AsciiWriter(Files.newOutputStream(full))) {
+                        Visualiser.write(mesh, writer);
+                    }
+                    if (!Arrays.equals(Files.readAllBytes(compacted), Files.readAllBytes(full))) {
+                        throw new Error("delta: compacted log differs from a full export"
+                                + " in sequence " + s + ", step " + step);
+                    }
+                    // as Visualiser.compact does, so the log starts over
+                    exporter.reset();
+                    ++compactions;
+                }
+            }
+        } finally {
+            Files.delete(log);
+            Files.delete(compacted);
+            Files.delete(full);
+        }
+        System.out.printf("%-12s %d compactions, identical to full exports%n",
+                "delta", compactions);
+    }
+}
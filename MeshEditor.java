@@ -0,0 +1,329 @@
+/**
+ * A batch of Euler operators applied to a working copy of a {@code Mesh}.
+ * Each operator sees the results of the ones before it, and
+ * {@code commit} validates the result once and returns it as a new mesh.
+ * The working copy path copies the persistent lists of the mesh, so the
+ * mesh the editor started from is left untouched and shares all records
+ * the batch did not change.
+ * Elements are addressed by id; operators that create an element return
+ * its id, or -1 if the operator did not apply.
+ */
+public class MeshEditor extends HalfEdgeOps {
+    private ImList<Mesh.VertexData> vertices;
+    private ImList<Mesh.FaceData> faces;
+    private ImList<Mesh.EdgeData> edges;
+
+    private FreeSlots freeVertices;
+    private FreeSlots freeFaces;
+    private FreeSlots freeEdges;
+
+    // the mesh as of the last commit, whose geometry cache the next commit derives from
+    private Mesh committed;
+    // the half-edges as of the last commit, to find the old neighbours of touched ones
+    private ImList<Mesh.EdgeData> committedEdges;
+    private final IntList touchedVertices = new IntList();
+    private final IntList touchedFaces = new IntList();
+    private final IntList touchedEdges = new IntList();
+
+    MeshEditor(Mesh committed, ImList<Mesh.VertexData> vertices, ImList<Mesh.FaceData> faces,
+            ImList<Mesh.EdgeData> edges, FreeSlots freeVertices, FreeSlots freeFaces,
+            FreeSlots freeEdges) {
+        this.committed = committed;
+        this.vertices = vertices;
+        this.faces = faces;
+        this.edges = edges;
+        this.freeVertices = freeVertices;
+        this.freeFaces = freeFaces;
+        this.freeEdges = freeEdges;
+        this.committedEdges = edges;
+    }
+
+    /**
+     * Validates the working copy as set by {@code Mesh.setValidation}
+     * and returns it as a mesh.
+     * The editor stays usable and later operators build on the committed state.
+     */
+    public Mesh commit() {
+        switch (Mesh.getValidation()) {
+            case FULL:
+                this.check();
+                break;
+            case INCREMENTAL:
+                this.checkTouched();
+                break;
+            default:
+                break;
+        }
+        this.touchedVertices.clear();
+        this.touchedFaces.clear();
+        this.touchedEdges.clear();
+        this.committedEdges = this.edges;
+        this.committed = this.toMesh().inheritGeometry(this.committed);
+        return this.committed;
+    }
+
+    /**
+     * Checks the elements changed since the last commit, together with
+     * the neighbours of changed half-edges both before and after the change.
+     * An invariant that {@code check} enforces can only break at such an element,
+     * so on a mesh that was valid at the last commit this finds the same errors.
+     */
+    void checkTouched() {
+        for (int i = 0; i < this.touchedEdges.size(); ++i) {
+            int e = this.touchedEdges.get(i);
+            if (this.isLiveHalfEdge(e)) {
+                this.checkHalfEdge(e);
+                this.checkNeighbours(this.edges.get(e));
+            }
+            if (e < this.committedEdges.size() && this.committedEdges.get(e) != null) {
+                this.checkNeighbours(this.committedEdges.get(e));
+            }
+        }
+        for (int i = 0; i < this.touchedVertices.size(); ++i) {
+            int v = this.touchedVertices.get(i);
+            if (this.isLiveVertex(v)) {
+                this.checkVertex(v);
+            }
+        }
+        for (int i = 0; i < this.touchedFaces.size(); ++i) {
+            int f = this.touchedFaces.get(i);
+            if (this.isLiveFace(f)) {
+                this.checkFace(f);
+            }
+        }
+    }
+
+    private void checkNeighbours(Mesh.EdgeData d) {
+        for (int n : new int[] { d.twin, d.next, d.prev }) {
+            if (this.isLiveHalfEdge(n)) {
+                this.checkHalfEdge(n);
+            }
+        }
+        if (this.isLiveVertex(d.vertex)) {
+            this.checkVertex(d.vertex);
+        }
+        if (this.isLiveFace(d.face)) {
+            this.checkFace(d.face);
+        }
+    }
+
+    Mesh toMesh() {
+        return new Mesh(this.vertices, this.faces, this.edges,
+                this.freeVertices, this.freeFaces, this.freeEdges);
+    }
+
+    public boolean moveVertex(Vertex v, Point p) {
+        return this.moveVertex(this.resolve(v), p.getX(), p.getY());
+    }
+
+    public int splitEdgeMakeVert(HalfEdge e, Point vertexPoint) {
+        return this.splitEdgeMakeVert(this.resolve(e), vertexPoint.getX(), vertexPoint.getY());
+    }
+
+    public boolean joinEdgeKillVert(Vertex v) {
+        return this.joinEdgeKillVert(this.resolve(v));
+    }
+
+    public int splitFaceMakeEdge(Face face, Vertex vertex1, Vertex vertex2) {
+        return this.splitFaceMakeEdge(this.resolve(face), this.resolve(vertex1),
+                this.resolve(vertex2));
+    }
+
+    public boolean joinFaceKillEdge(HalfEdge edge) {
+        return this.joinFaceKillEdge(this.resolve(edge));
+    }
+
+    /**
+     * @return the id of {@code v}, or -1 if its slot is empty or was
+     *     reused since, so that operators treat it as not live.
+     */
+    private int resolve(Vertex v) {
+        int id = v.getId();
+        return this.isLiveVertex(id) && this.vertices.get(id).generation == v.getGeneration()
+            ? id : -1;
+    }
+
+    private int resolve(Face f) {
+        int id = f.getId();
+        return this.isLiveFace(id) && this.faces.get(id).generation == f.getGeneration()
+            ? id : -1;
+    }
+
+    private int resolve(HalfEdge e) {
+        int id = e.getId();
+        return this.isLiveHalfEdge(id) && this.edges.get(id).generation == e.getGeneration()
+            ? id : -1;
+    }
+
+    int vertexCount() {
+        return this.vertices.size();
+    }
+
+    int faceCount() {
+        return this.faces.size();
+    }
+
+    int halfEdgeCount() {
+        return this.edges.size();
+    }
+
+    boolean isLiveVertex(int v) {
+        return v >= 0 && v < this.vertices.size() && this.vertices.get(v) != null;
+    }
+
+    boolean isLiveFace(int f) {
+        return f >= 0 && f < this.faces.size() && this.faces.get(f) != null;
+    }
+
+    boolean isLiveHalfEdge(int e) {
+        return e >= 0 && e < this.edges.size() && this.edges.get(e) != null;
+    }
+
+    int next(int e) {
+        return this.edges.get(e).next;
+    }
+
+    int prev(int e) {
+        return this.edges.get(e).prev;
+    }
+
+    int twin(int e) {
+        return this.edges.get(e).twin;
+    }
+
+    int vertex(int e) {
+        return this.edges.get(e).vertex;
+    }
+
+    int face(int e) {
+        return this.edges.get(e).face;
+    }
+
+    double x(int v) {
+        return this.vertices.get(v).p.getX();
+    }
+
+    double y(int v) {
+        return this.vertices.get(v).p.getY();
+    }
+
+    int vertexHalfEdge(int v) {
+        return this.vertices.get(v).edge;
+    }
+
+    int faceHalfEdge(int f) {
+        return this.faces.get(f).edge;
+    }
+
+    void setNext(int e, int next) {
+        this.touchedEdges.add(e);
+        Mesh.EdgeData d = this.edges.get(e);
+        this.edges = this.edges.set(e,
+                new Mesh.EdgeData(d.vertex, d.face, d.twin, next, d.prev, d.generation));
+    }
+
+    void setPrev(int e, int prev) {
+        this.touchedEdges.add(e);
+        Mesh.EdgeData d = this.edges.get(e);
+        this.edges = this.edges.set(e,
+                new Mesh.EdgeData(d.vertex, d.face, d.twin, d.next, prev, d.generation));
+    }
+
+    void setTwin(int e, int twin) {
+        this.touchedEdges.add(e);
+        Mesh.EdgeData d = this.edges.get(e);
+        this.edges = this.edges.set(e,
+                new Mesh.EdgeData(d.vertex, d.face, twin, d.next, d.prev, d.generation));
+    }
+
+    void setFace(int e, int f) {
+        this.touchedEdges.add(e);
+        Mesh.EdgeData d = this.edges.get(e);
+        this.edges = this.edges.set(e,
+                new Mesh.EdgeData(d.vertex, f, d.twin, d.next, d.prev, d.generation));
+    }
+
+    void setVertexHalfEdge(int v, int e) {
+        this.touchedVertices.add(v);
+        Mesh.VertexData d = this.vertices.get(v);
+        this.vertices = this.vertices.set(v, new Mesh.VertexData(d.p, e, d.generation));
+    }
+
+    void setFaceHalfEdge(int f, int e) {
+        this.touchedFaces.add(f);
+        this.faces = this.faces.set(f, new Mesh.FaceData(e, this.faces.get(f).generation));
+    }
+
+    void setVertexPosition(int v, double x, double y) {
+        this.touchedVertices.add(v);
+        Mesh.VertexData d = this.vertices.get(v);
+        this.vertices = this.vertices.set(v,
+                new Mesh.VertexData(new Point(x, y), d.edge, d.generation));
+    }
+
+    /**
+     * Stores the new vertex in the most recently freed slot, if any.
+     */
+    int addVertex(double x, double y) {
+        FreeSlots free = this.freeVertices;
+        int v = free == null ? this.vertices.size() : free.slot;
+        Mesh.VertexData d = new Mesh.VertexData(new Point(x, y), -1,
+                free == null ? 0 : free.generation);
+        if (free == null) {
+            this.vertices = this.vertices.add(d);
+        } else {
+            this.vertices = this.vertices.set(v, d);
+            this.freeVertices = free.next;
+        }
+        this.touchedVertices.add(v);
+        return v;
+    }
+
+    int addFace() {
+        FreeSlots free = this.freeFaces;
+        int f = free == null ? this.faces.size() : free.slot;
+        Mesh.FaceData d = new Mesh.FaceData(-1, free == null ? 0 : free.generation);
+        if (free == null) {
+            this.faces = this.faces.add(d);
+        } else {
+            this.faces = this.faces.set(f, d);
+            this.freeFaces = free.next;
+        }
+        this.touchedFaces.add(f);
+        return f;
+    }
+
+    int addHalfEdge(int v, int f) {
+        FreeSlots free = this.freeEdges;
+        int e = free == null ? this.edges.size() : free.slot;
+        Mesh.EdgeData d = new Mesh.EdgeData(v, f, -1, -1, -1,
+                free == null ? 0 : free.generation);
+        if (free == null) {
+            this.edges = this.edges.add(d);
+        } else {
+            this.edges = this.edges.set(e, d);
+            this.freeEdges = free.next;
+        }
+        this.touchedEdges.add(e);
+        return e;
+    }
+
+    void killVertex(int v) {
+        this.touchedVertices.add(v);
+        this.freeVertices = new FreeSlots(v, this.vertices.get(v).generation + 1,
+                this.freeVertices);
+        this.vertices = this.vertices.set(v, null);
+    }
+
+    void killFace(int f) {
+        this.touchedFaces.add(f);
+        this.freeFaces = new FreeSlots(f, this.faces.get(f).generation + 1, this.freeFaces);
+        this.faces = this.faces.set(f, null);
+    }
+
+    void killHalfEdge(int e) {
+        this.touchedEdges.add(e);
+        this.freeEdges = new FreeSlots(e, this.edges.get(e).generation + 1, this.freeEdges);
+        this.edges = this.edges.set(e, null);
+    }
+}
@@ -0,0 +1,259 @@
+import java.util.Arrays;
+
+/**
+ * Lazily computed geometry of the half-edges and faces of a mesh:
+ * half-edge lengths and angles, and face areas, perimeters and centroids.
+ * Values are kept in blocks of primitive arrays, NaN until computed.
+ * A mesh made from another by an Euler operator derives its cache from the
+ * cache of that mesh, sharing the blocks and copying only those holding
+ * entries the operator invalidated, so the work is proportional to the
+ * size of the change.
+ * A block shared between caches only holds entries that are equal in every
+ * mesh sharing it, so lookups racing on different meshes store the same values.
+ */
+class MeshGeometry {
+    private static final int BLOCK_BITS = 8;
+    private static final int BLOCK = 1 << BLOCK_BITS;
+    private static final int MASK = BLOCK - 1;
+
+    // per half-edge
+    private static final int LENGTH = 0;
+    private static final int ANGLE = 1;
+    // per face
+    private static final int AREA = 0;
+    private static final int PERIMETER = 1;
+    private static final int CENTROID_X = 2;
+    private static final int CENTROID_Y = 3;
+
+    private final Table edges;
+    private final Table faces;
+
+    MeshGeometry(Mesh m) {
+        this.edges = new Table(2, m.halfEdgeCount());
+        this.faces = new Table(4, m.faceCount());
+    }
+
+    private MeshGeometry(MeshGeometry shared, Mesh m) {
+        this.edges = new Table(shared.edges, m.halfEdgeCount());
+        this.faces = new Table(shared.faces, m.faceCount());
+    }
+
+    /**
+     * A growable array of {@code stride} doubles per element, stored in
+     * blocks. A derived table starts out sharing every block of the table
+     * it was derived from, and copies a block the first time it invalidates
+     * an entry in it.
+     */
+    private static final class Table {
+        private final int stride;
+        private final double[][] blocks;
+        // the blocks of the table this one was derived from, until derive returns
+        private double[][] shared;
+
+        Table(int stride, int size) {
+            this.stride = stride;
+            this.blocks = new double[(size * stride + MASK) >>> BLOCK_BITS][];
+            for (int b = 0; b < this.blocks.length; ++b) {
+                this.blocks[b] = Table.emptyBlock();
+            }
+        }
+
+        Table(Table shared, int size) {
+            this.stride = shared.stride;
+            int n = Math.max((size * this.stride + MASK) >>> BLOCK_BITS, shared.blocks.length);
+            this.blocks = Arrays.copyOf(shared.blocks, n);
+            for (int b = shared.blocks.length; b < n; ++b) {
+                this.blocks[b] = Table.emptyBlock();
+            }
+            this.shared = shared.blocks;
+        }
+
+        private static double[] emptyBlock() {
+            double[] block = new double[BLOCK];
+            Arrays.fill(block, Double.NaN);
+            return block;
+        }
+
+        double get(int i, int field) {
+            int j = i * this.stride + field;
+            return this.blocks[j >>> BLOCK_BITS][j & MASK];
+        }
+
+        void set(int i, int field, double value) {
+            int j = i * this.stride + field;
+            this.blocks[j >>> BLOCK_BITS][j & MASK] = value;
+        }
+
+        /**
+         * Clears the entries of an element, first copying their block if it is shared.
+         * The stride divides the block size, so they are all in one block.
+         */
+        void invalidate(int i) {
+            int j = i * this.stride;
+            int b = j >>> BLOCK_BITS;
+            if (i < 0 || b >= this.blocks.length) {
+                return;
+            }
+            if (this.shared != null && b < this.shared.length
+                    && this.blocks[b] == this.shared[b]) {
+                this.blocks[b] = this.blocks[b].clone();
+            }
+            Arrays.fill(this.blocks[b], j & MASK, (j & MASK) + this.stride, Double.NaN);
+        }
+    }
+
+    /**
+     * @return the cache of {@code next}, which must descend from {@code previous},
+     *     this being the cache of {@code previous}.
+     */
+    MeshGeometry derive(Mesh previous, Mesh next) {
+        MeshGeometry g = new MeshGeometry(this, next);
+        next.forEachChangedHalfEdge(previous, e -> {
+            g.edges.invalidate(e);
+            if (previous.isLiveHalfEdge(e)) {
+                g.edges.invalidate(previous.prev(e));
+            }
+            if (next.isLiveHalfEdge(e)) {
+                g.edges.invalidate(next.prev(e));
+            }
+        });
+        next.forEachChangedVertex(previous, v -> next.forEachVertexHalfEdge(v, e -> {
+            g.edges.invalidate(e);
+            g.edges.invalidate(next.prev(e));
+        }));
+        next.forEachAffectedFace(previous, g.faces::invalidate);
+        g.edges.shared = null;
+        g.faces.shared = null;
+        return g;
+    }
+
+    /**
+     * @return -1 if the half-edge or its next half-edge has no vertex.
+     */
+    double edgeLength(Mesh m, int e) {
+        double length = this.edges.get(e, LENGTH);
+        if (Double.isNaN(length)) {
+            int v = m.vertex(e);
+            int dest = MeshGeometry.destination(m, e);
+            if (v == -1 || dest == -1) {
+                length = -1.0;
+            } else {
+                Point p1 = m.point(v);
+                Point p2 = m.point(dest);
+                length = Geometry.distance(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+            }
+            this.edges.set(e, LENGTH, length);
+        }
+        return length;
+    }
+
+    /**
+     * @return 2 pi if the half-edge or its next half-edge has no vertex.
+     */
+    double edgeAngle(Mesh m, int e) {
+        double angle = this.edges.get(e, ANGLE);
+        if (Double.isNaN(angle)) {
+            int v = m.vertex(e);
+            int dest = MeshGeometry.destination(m, e);
+            if (v == -1 || dest == -1) {
+                angle = 2 * Math.PI;
+            } else {
+                Point p1 = m.point(v);
+                Point p2 = m.point(dest);
+                angle = Geometry.angle(p2.getX() - p1.getX(),
+                        p2.getY() - p1.getY()) % (2 * Math.PI);
+            }
+            this.edges.set(e, ANGLE, angle);
+        }
+        return angle;
+    }
+
+    private static int destination(Mesh m, int e) {
+        int next = m.next(e);
+        return next == -1 ? -1 : m.vertex(next);
+    }
+
+    /**
+     * @return the signed area of a face, positive if it winds counterclockwise.
+     */
+    double faceArea(Mesh m, int f) {
+        double area = this.faces.get(f, AREA);
+        if (Double.isNaN(area)) {
+            this.computeFace(m, f);
+            area = this.faces.get(f, AREA);
+        }
+        return area;
+    }
+
+    double facePerimeter(Mesh m, int f) {
+        double perimeter = this.faces.get(f, PERIMETER);
+        if (Double.isNaN(perimeter)) {
+            this.computeFace(m, f);
+            perimeter = this.faces.get(f, PERIMETER);
+        }
+        return perimeter;
+    }
+
+    Point faceCentroid(Mesh m, int f) {
+        double x = this.faces.get(f, CENTROID_X);
+        double y = this.faces.get(f, CENTROID_Y);
+        if (Double.isNaN(x) || Double.isNaN(y)) {
+            this.computeFace(m, f);
+            x = this.faces.get(f, CENTROID_X);
+            y = this.faces.get(f, CENTROID_Y);
+        }
+        return new Point(x, y);
+    }
+
+    /**
+     * Computes all face values in one walk around the face, relative to its
+     * first vertex to keep the precision of faces far from the origin.
+     * A face with zero area has the mean of its vertices as its centroid,
+     * and a face without half-edges has the origin.
+     */
+    private void computeFace(Mesh m, int f) {
+        double area = 0.0;
+        double perimeter = 0.0;
+        double x = 0.0;
+        double y = 0.0;
+        int start = m.faceHalfEdge(f);
+        if (start != -1) {
+            Point origin = m.point(m.vertex(start));
+            double sumX = 0.0;
+            double sumY = 0.0;
+            int count = 0;
+            int e = start;
+            do {
+                Point p = m.point(m.vertex(e));
+                Point q = m.point(m.vertex(m.next(e)));
+                double px = p.getX() - origin.getX();
+                double py = p.getY() - origin.getY();
+                double qx = q.getX() - origin.getX();
+                double qy = q.getY() - origin.getY();
+                double cross = Geometry.cross(px, py, qx, qy);
+                area += cross;
+                x += (px + qx) * cross;
+                y += (py + qy) * cross;
+                sumX += px;
+                sumY += py;
+                ++count;
+                perimeter += this.edgeLength(m, e);
+                e = m.next(e);
+            } while (e != start);
+            if (area != 0.0) {
+                x /= 3 * area;
+                y /= 3 * area;
+            } else {
+                x = sumX / count;
+                y = sumY / count;
+            }
+            x += origin.getX();
+            y += origin.getY();
+            area /= 2;
+        }
+        this.faces.set(f, AREA, area);
+        this.faces.set(f, PERIMETER, perimeter);
+        this.faces.set(f, CENTROID_X, x);
+        this.faces.set(f, CENTROID_Y, y);
+    }
+}
@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An undo history of meshes, kept as a tree of versions so that committing
+ * after an undo starts a new branch instead of discarding the redo history.
+ * Meshes share the storage they did not change, so a version costs only
+ * the records and trie nodes its edit copied, not a copy of the mesh.
+ * <p>
+ * When the versions retained cost more than the budget, the least recently
+ * visited ones are evicted, other than the current version. An evicted
+ * version is spliced out of the tree: its children take its parent as
+ * theirs, so undo steps over it to the nearest version still retained.
+ * Geometry caches are not retained with old versions, since they are
+ * derived; a version recomputes its geometry on the first query after
+ * it is returned to.
+ */
+public class MeshHistory {
+    private final LinkedHashSet<Version> recent = new LinkedHashSet<Version>();
+    private long budget;
+    private long retainedBytes;
+    private int nextId;
+    private Version current;
+    private Mesh mesh;
+
+    /**
+     * A mesh in the history. The root of the tree has no parent.
+     */
+    public static final class Version {
+        private final int id;
+        private Mesh mesh;
+        private Version parent;
+        private final List<Version> children = new ArrayList<Version>();
+        // the child redo returns to
+        private Version redo;
+        private long bytes;
+
+        private Version(int id, Mesh mesh, Version parent) {
+            this.id = id;
+            this.mesh = mesh;
+            this.parent = parent;
+        }
+
+        public int getId() {
+            return this.id;
+        }
+
+        /**
+         * @return the mesh of this version, or nothing if it was evicted.
+         */
+        public Optional<Mesh> getMesh() {
+            return Optional.ofNullable(this.mesh);
+        }
+
+        public Optional<Version> getParent() {
+            return Optional.ofNullable(this.parent);
+        }
+
+        /**
+         * @return an estimate of the bytes retained by this version that
+         *     its parent does not share, or the whole mesh for the root;
+         *     0 once evicted.
+         */
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        public boolean isRetained() {
+            return this.mesh != null;
+        }
+
+        @Override
+        public String toString() {
+            return "Version " + this.id + " (" + this.bytes + " bytes)";
+        }
+    }
+
+    /**
+     * @param budget the estimated bytes the retained versions may cost
+     *     before the least recently visited are evicted.
+     */
+    public MeshHistory(Mesh initial, long budget) {
+        this.budget = budget;
+        this.current = this.newVersion(initial, null);
+        this.mesh = initial;
+    }
+
+    /**
+     * @return the mesh of the current version, as committed or returned to.
+     */
+    public Mesh getMesh() {
+        return this.mesh;
+    }
+
+    public Version getCurrent() {
+        return this.current;
+    }
+
+    /**
+     * Records {@code next} as a child of the current version and makes it
+     * current. Committing the current mesh again records nothing.
+     */
+    public Version commit(Mesh next) {
+        if (next == this.mesh) {
+            return this.current;
+        }
+        Version v = this.newVersion(next, this.current);
+        this.current.children.add(v);
+        this.current.redo = v;
+        this.current = v;
+        this.mesh = next;
+        this.evict();
+        return v;
+    }
+
+    /**
+     * Returns to the parent of the current version.
+     *
+     * @return the mesh returned to, or nothing if the current version is the root.
+     */
+    public Optional<Mesh> undo() {
+        Version parent = this.current.parent;
+        if (parent == null) {
+            return Optional.<Mesh>empty();
+        }
+        parent.redo = this.current;
+        return Optional.of(this.visit(parent));
+    }
+
+    /**
+     * Returns to the child of the current version last undone from or
+     * committed, following the branch last taken.
+     *
+     * @return the mesh returned to, or nothing if the current version has no children.
+     */
+    public Optional<Mesh> redo() {
+        Version child = this.current.redo;
+        if (child == null) {
+            return Optional.<Mesh>empty();
+        }
+        return Optional.of(this.visit(child));
+    }
+
+    /**
+     * Makes {@code v} current, which may be on another branch.
+     *
+     * @return the mesh of {@code v}, or nothing if it was evicted.
+     */
+    public Optional<Mesh> checkout(Version v) {
+        if (!v.isRetained() || !this.recent.contains(v)) {
+            return Optional.<Mesh>empty();
+        }
+        if (v.parent != null) {
+            v.parent.redo = v;
+        }
+        return Optional.of(this.visit(v));
+    }
+
+    /**
+     * @return the retained versions, least recently visited first.
+     */
+    public ImList<Version> getVersions() {
+        return new ImList<Version>(new ArrayList<Version>(this.recent));
+    }
+
+    /**
+     * @return an estimate of the bytes retained by all versions, the sum of
+     *     their {@code getBytes}.
+     */
+    public long getRetainedBytes() {
+        return this.retainedBytes;
+    }
+
+    public long getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Changes the budget, evicting versions at once if it shrank.
+     */
+    public void setBudget(long budget) {
+        this.budget = budget;
+        this.evict();
+    }
+
+    private Version newVersion(Mesh m, Version parent) {
+        Mesh kept = m.withoutGeometry();
+        Version v = new Version(this.nextId++, kept, parent);
+        v.bytes = kept.bytesNotIn(parent == null ? null : parent.mesh);
+        this.retainedBytes += v.bytes;
+        this.recent.add(v);
+        return v;
+    }
+
+    private Mesh visit(Version v) {
+        this.recent.remove(v);
+        this.recent.add(v);
+        this.current = v;
+        this.mesh = v.mesh;
+        return this.mesh;
+    }
+
+    /**
+     * Evicts the least recently visited versions until the rest fit the
+     * budget. A root with several children is kept, since splicing it
+     * out would split the tree.
+     */
+    private void evict() {
+        Iterator<Version> it = this.recent.iterator();
+        while (this.retainedBytes > this.budget && it.hasNext()) {
+            Version v = it.next();
+            if (v == this.current || (v.parent == null && v.children.size() > 1)) {
+                continue;
+            }
+            it.remove();
+            this.splice(v);
+        }
+    }
+
+    private void splice(Version v) {
+        Version parent = v.parent;
+        if (parent != null) {
+            parent.children.remove(v);
+        }
+        for (Version child : v.children) {
+            child.parent = parent;
+            this.retainedBytes -= child.bytes;
+            child.bytes = child.mesh.bytesNotIn(parent == null ? null : parent.mesh);
+            this.retainedBytes += child.bytes;
+            if (parent != null) {
+                parent.children.add(child);
+            }
+        }
+        if (parent != null && parent.redo == v) {
+            parent.redo = v.redo != null || parent.children.isEmpty()
+                ? v.redo : parent.children.get(parent.children.size() - 1);
+        }
+        this.retainedBytes -= v.bytes;
+        v.bytes = 0;
+        v.mesh = null;
+        v.parent = null;
+        v.redo = null;
+        v.children.clear();
+    }
+}
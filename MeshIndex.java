@@ -0,0 +1,387 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A uniform grid over the face bounding boxes and vertex positions of a
+ * {@code Mesh}, answering point location and nearest vertex queries
+ * without scanning the whole mesh.
+ * The grid covers the bounding box of the mesh with about one cell per face.
+ * {@code update} moves the index to a newer version of the mesh,
+ * re-indexing only the faces and vertices that changed; if the new
+ * geometry leaves the grid, or the faces outgrow it to more than
+ * {@code MAX_FACES_PER_CELL} a cell on average, the grid is rebuilt.
+ * <p>
+ * An index is not thread-safe, even for queries alone:
+ * {@code facesInRect} marks the faces it reports in shared state.
+ */
+public class MeshIndex {
+    // more faces than this per cell on average and the grid is rebuilt at about one per face
+    private static final int MAX_FACES_PER_CELL = 4;
+
+    private Mesh mesh;
+
+    private double minX;
+    private double minY;
+    private double cellSize;
+    private int columns;
+    private int rows;
+    private IntList[] faceCells;
+    private IntList[] vertexCells;
+    private int indexedFaces;
+
+    // bounding box of each indexed face by id, NaN if the face is not indexed
+    private double[] faceMinX = new double[0];
+    private double[] faceMinY = new double[0];
+    private double[] faceMaxX = new double[0];
+    private double[] faceMaxY = new double[0];
+    // position of each indexed vertex by id, NaN if the vertex is not indexed
+    private double[] vertexX = new double[0];
+    private double[] vertexY = new double[0];
+
+    // marks faces already reported by the current facesInRect query
+    private int[] faceStamps = new int[0];
+    private int stamp;
+
+    public MeshIndex(Mesh mesh) {
+        this.mesh = mesh;
+        this.rebuild();
+    }
+
+    public Mesh getMesh() {
+        return this.mesh;
+    }
+
+    /**
+     * Re-indexes the faces and vertices whose geometry differs between the
+     * indexed mesh and {@code newMesh}. When {@code newMesh} was derived
+     * from the indexed mesh through Euler operators, this costs time
+     * proportional to the number of changed elements.
+     */
+    public void update(Mesh newMesh) {
+        Mesh oldMesh = this.mesh;
+        IntList faces = new IntList();
+        IntList vertices = new IntList();
+        newMesh.forEachChangedVertex(oldMesh, vertices::add);
+        newMesh.forEachAffectedFace(oldMesh, faces::add);
+        this.mesh = newMesh;
+        this.ensureCapacity();
+
+        for (int i = 0; i < vertices.size(); ++i) {
+            int v = vertices.get(i);
+            this.removeVertex(v);
+            if (newMesh.isLiveVertex(v) && !this.insertVertex(v)) {
+                this.rebuild();
+                return;
+            }
+        }
+        for (int i = 0; i < faces.size(); ++i) {
+            int f = faces.get(i);
+            this.removeFace(f);
+            if (newMesh.isLiveFace(f) && !this.insertFace(f)) {
+                this.rebuild();
+                return;
+            }
+        }
+        // rebuilding after the faces grew by a constant factor keeps updates amortized O(changed)
+        if (this.indexedFaces > MAX_FACES_PER_CELL * this.faceCells.length) {
+            this.rebuild();
+        }
+    }
+
+    /**
+     * @return a face whose polygon contains {@code p}.
+     */
+    public Optional<Face> locateFace(Point p) {
+        double x = p.getX();
+        double y = p.getY();
+        IntList cell = this.faceCells[this.cellOf(x, y)];
+        for (int i = 0; i < cell.size(); ++i) {
+            int f = cell.get(i);
+            if (x >= this.faceMinX[f] && x <= this.faceMaxX[f] &&
+                    y >= this.faceMinY[f] && y <= this.faceMaxY[f] &&
+                    this.contains(f, x, y)) {
+                return this.mesh.getFace(f);
+            }
+        }
+        return Optional.<Face>empty();
+    }
+
+    /**
+     * @return the vertex closest to {@code p}, or empty if the mesh has no vertices.
+     */
+    public Optional<Vertex> nearestVertex(Point p) {
+        double x = p.getX();
+        double y = p.getY();
+        int cell = this.cellOf(x, y);
+        int cx = cell % this.columns;
+        int cy = cell / this.columns;
+        int best = -1;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (int r = 0; ; ++r) {
+            for (int j = Math.max(cy - r, 0); j <= Math.min(cy + r, this.rows - 1); ++j) {
+                boolean edgeRow = j == cy - r || j == cy + r;
+                for (int i = Math.max(cx - r, 0); i <= Math.min(cx + r, this.columns - 1); ++i) {
+                    if (!edgeRow && i != cx - r && i != cx + r) {
+                        continue;
+                    }
+                    IntList vertices = this.vertexCells[j * this.columns + i];
+                    for (int k = 0; k < vertices.size(); ++k) {
+                        int v = vertices.get(k);
+                        double dist = Geometry.distanceSquared(x, y,
+                                this.vertexX[v], this.vertexY[v]);
+                        if (dist < bestDist) {
+                            bestDist = dist;
+                            best = v;
+                        }
+                    }
+                }
+            }
+            // distance from p to the nearest cell outside the rings searched so far
+            double bound = Double.POSITIVE_INFINITY;
+            if (cx - r > 0) {
+                bound = Math.min(bound, x - (this.minX + (cx - r) * this.cellSize));
+            }
+            if (cx + r < this.columns - 1) {
+                bound = Math.min(bound, this.minX + (cx + r + 1) * this.cellSize - x);
+            }
+            if (cy - r > 0) {
+                bound = Math.min(bound, y - (this.minY + (cy - r) * this.cellSize));
+            }
+            if (cy + r < this.rows - 1) {
+                bound = Math.min(bound, this.minY + (cy + r + 1) * this.cellSize - y);
+            }
+            if (bound == Double.POSITIVE_INFINITY ||
+                    (best != -1 && bestDist <= bound * bound)) {
+                break;
+            }
+        }
+        return best == -1 ? Optional.<Vertex>empty() : this.mesh.getVertex(best);
+    }
+
+    /**
+     * @return the faces whose bounding boxes intersect the given rectangle.
+     */
+    public ImList<Face> facesInRect(double minX, double minY, double maxX, double maxY) {
+        List<Face> faces = new ArrayList<Face>();
+        if (++this.stamp == 0) {
+            Arrays.fill(this.faceStamps, 0);
+            this.stamp = 1;
+        }
+        int cx0 = this.column(minX);
+        int cx1 = this.column(maxX);
+        int cy0 = this.row(minY);
+        int cy1 = this.row(maxY);
+        for (int j = cy0; j <= cy1; ++j) {
+            for (int i = cx0; i <= cx1; ++i) {
+                IntList cell = this.faceCells[j * this.columns + i];
+                for (int k = 0; k < cell.size(); ++k) {
+                    int f = cell.get(k);
+                    if (this.faceStamps[f] != this.stamp &&
+                            this.faceMinX[f] <= maxX && this.faceMaxX[f] >= minX &&
+                            this.faceMinY[f] <= maxY && this.faceMaxY[f] >= minY) {
+                        this.faceStamps[f] = this.stamp;
+                        faces.add(new Face(this.mesh, f));
+                    }
+                }
+            }
+        }
+        return new ImList<Face>(faces);
+    }
+
+    /**
+     * Even-odd test of {@code (x, y)} against the polygon of face {@code f}.
+     */
+    private boolean contains(int f, double x, double y) {
+        boolean inside = false;
+        int start = this.mesh.faceHalfEdge(f);
+        int curr = start;
+        do {
+            Point a = this.mesh.point(this.mesh.vertex(curr));
+            int next = this.mesh.next(curr);
+            Point b = this.mesh.point(this.mesh.vertex(next));
+            // the edge crosses the ray to the right of (x, y) if (x, y) lies on its inner side
+            if ((a.getY() > y) != (b.getY() > y) && (Geometry.orient(a.getX(), a.getY(),
+                            b.getX(), b.getY(), x, y) > 0) == (b.getY() > a.getY())) {
+                inside = !inside;
+            }
+            curr = next;
+        } while (curr != start);
+        return inside;
+    }
+
+    private void rebuild() {
+        Mesh m = this.mesh;
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        int numVertices = 0;
+        int numFaces = 0;
+        for (int v = 0; v < m.vertexCount(); ++v) {
+            if (m.isLiveVertex(v)) {
+                Point p = m.point(v);
+                x0 = Math.min(x0, p.getX());
+                y0 = Math.min(y0, p.getY());
+                x1 = Math.max(x1, p.getX());
+                y1 = Math.max(y1, p.getY());
+                ++numVertices;
+            }
+        }
+        for (int f = 0; f < m.faceCount(); ++f) {
+            if (m.isLiveFace(f)) {
+                ++numFaces;
+            }
+        }
+        if (numVertices == 0) {
+            x0 = y0 = 0.0;
+            x1 = y1 = 1.0;
+        }
+        // pad so that small edits near the boundary stay inside the grid
+        double width = Math.max(x1 - x0, 1e-9);
+        double height = Math.max(y1 - y0, 1e-9);
+        double pad = 0.05 * Math.max(width, height);
+        this.minX = x0 - pad;
+        this.minY = y0 - pad;
+        width += 2 * pad;
+        height += 2 * pad;
+        int cells = Math.max(numFaces, 1);
+        this.cellSize = Math.max(Math.sqrt(width * height / cells),
+                Math.max(width, height) / cells);
+        this.columns = Math.max((int) Math.ceil(width / this.cellSize), 1);
+        this.rows = Math.max((int) Math.ceil(height / this.cellSize), 1);
+        this.faceCells = new IntList[this.columns * this.rows];
+        this.vertexCells = new IntList[this.columns * this.rows];
+        for (int i = 0; i < this.faceCells.length; ++i) {
+            this.faceCells[i] = new IntList();
+            this.vertexCells[i] = new IntList();
+        }
+        this.faceMinX = new double[0];
+        this.vertexX = new double[0];
+        this.indexedFaces = 0;
+        this.ensureCapacity();
+        for (int v = 0; v < m.vertexCount(); ++v) {
+            if (m.isLiveVertex(v)) {
+                this.insertVertex(v);
+            }
+        }
+        for (int f = 0; f < m.faceCount(); ++f) {
+            if (m.isLiveFace(f)) {
+                this.insertFace(f);
+            }
+        }
+    }
+
+    private void ensureCapacity() {
+        int faces = this.mesh.faceCount();
+        if (this.faceMinX.length < faces) {
+            int old = this.faceMinX.length;
+            int capacity = Math.max(faces, old * 2);
+            this.faceMinX = Arrays.copyOf(this.faceMinX, capacity);
+            this.faceMinY = Arrays.copyOf(this.faceMinY, capacity);
+            this.faceMaxX = Arrays.copyOf(this.faceMaxX, capacity);
+            this.faceMaxY = Arrays.copyOf(this.faceMaxY, capacity);
+            this.faceStamps = Arrays.copyOf(this.faceStamps, capacity);
+            Arrays.fill(this.faceMinX, old, capacity, Double.NaN);
+        }
+        int vertices = this.mesh.vertexCount();
+        if (this.vertexX.length < vertices) {
+            int old = this.vertexX.length;
+            int capacity = Math.max(vertices, old * 2);
+            this.vertexX = Arrays.copyOf(this.vertexX, capacity);
+            this.vertexY = Arrays.copyOf(this.vertexY, capacity);
+            Arrays.fill(this.vertexX, old, capacity, Double.NaN);
+        }
+    }
+
+    private boolean inGrid(double x, double y) {
+        return x >= this.minX && x <= this.minX + this.columns * this.cellSize &&
+            y >= this.minY && y <= this.minY + this.rows * this.cellSize;
+    }
+
+    private int column(double x) {
+        int i = (int) Math.floor((x - this.minX) / this.cellSize);
+        return Math.min(Math.max(i, 0), this.columns - 1);
+    }
+
+    private int row(double y) {
+        int j = (int) Math.floor((y - this.minY) / this.cellSize);
+        return Math.min(Math.max(j, 0), this.rows - 1);
+    }
+
+    private int cellOf(double x, double y) {
+        return this.row(y) * this.columns + this.column(x);
+    }
+
+    /**
+     * @return false if the vertex lies outside the grid and was not indexed.
+     */
+    private boolean insertVertex(int v) {
+        Point p = this.mesh.point(v);
+        if (!this.inGrid(p.getX(), p.getY())) {
+            return false;
+        }
+        this.vertexX[v] = p.getX();
+        this.vertexY[v] = p.getY();
+        this.vertexCells[this.cellOf(p.getX(), p.getY())].add(v);
+        return true;
+    }
+
+    private void removeVertex(int v) {
+        if (v < this.vertexX.length && !Double.isNaN(this.vertexX[v])) {
+            this.vertexCells[this.cellOf(this.vertexX[v], this.vertexY[v])].removeUnordered(v);
+            this.vertexX[v] = Double.NaN;
+        }
+    }
+
+    /**
+     * @return false if the face lies outside the grid and was not indexed.
+     */
+    private boolean insertFace(int f) {
+        int start = this.mesh.faceHalfEdge(f);
+        if (start == -1) {
+            return true;
+        }
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        int curr = start;
+        do {
+            Point p = this.mesh.point(this.mesh.vertex(curr));
+            x0 = Math.min(x0, p.getX());
+            y0 = Math.min(y0, p.getY());
+            x1 = Math.max(x1, p.getX());
+            y1 = Math.max(y1, p.getY());
+            curr = this.mesh.next(curr);
+        } while (curr != start);
+        if (!this.inGrid(x0, y0) || !this.inGrid(x1, y1)) {
+            return false;
+        }
+        this.faceMinX[f] = x0;
+        this.faceMinY[f] = y0;
+        this.faceMaxX[f] = x1;
+        this.faceMaxY[f] = y1;
+        for (int j = this.row(y0); j <= this.row(y1); ++j) {
+            for (int i = this.column(x0); i <= this.column(x1); ++i) {
+                this.faceCells[j * this.columns + i].add(f);
+            }
+        }
+        ++this.indexedFaces;
+        return true;
+    }
+
+    private void removeFace(int f) {
+        if (f >= this.faceMinX.length || Double.isNaN(this.faceMinX[f])) {
+            return;
+        }
+        for (int j = this.row(this.faceMinY[f]); j <= this.row(this.faceMaxY[f]); ++j) {
+            for (int i = this.column(this.faceMinX[f]); i <= this.column(this.faceMaxX[f]); ++i) {
+                this.faceCells[j * this.columns + i].removeUnordered(f);
+            }
+        }
+        this.faceMinX[f] = Double.NaN;
+        --this.indexedFaces;
+    }
+}
@@ -0,0 +1,359 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Persists a mesh through its history of Euler operators: each operator
+ * applied through the journal appends a small binary record to a log, and
+ * every {@code snapshotInterval} records the whole mesh is written as a
+ * {@code MeshBinary} snapshot and a new log is started.
+ * <p>
+ * A journal is a directory holding {@code snapshot-N.bin} and
+ * {@code log-N.bin}, where N is the number of operators recorded before the
+ * snapshot, and {@code log-N.bin} holds the operators after it. Older
+ * snapshots and logs are deleted once a newer snapshot is written.
+ * Records are little-endian: a one-byte operator code followed by its
+ * element ids and coordinates, as passed to the {@code int} forms of the
+ * {@code MeshEditor} operators. Only operators that applied are recorded,
+ * so replaying them on the snapshot assigns the same ids.
+ */
+public class MeshJournal implements Closeable {
+    private static final byte MOVE_VERTEX = 1;
+    private static final byte SPLIT_EDGE_MAKE_VERT = 2;
+    private static final byte JOIN_EDGE_KILL_VERT = 3;
+    private static final byte SPLIT_FACE_MAKE_EDGE = 4;
+    private static final byte JOIN_FACE_KILL_EDGE = 5;
+    private static final int MAX_RECORD_BYTES = 1 + Integer.BYTES + 2 * Double.BYTES;
+
+    private final Path dir;
+    private final int snapshotInterval;
+    private final ByteBuffer record =
+        ByteBuffer.allocate(MAX_RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private Mesh mesh;
+    private long snapshot;
+    private int logged;
+    private FileChannel log;
+
+    private MeshJournal(Path dir, int snapshotInterval, Mesh mesh, long snapshot,
+            int logged, FileChannel log) {
+        this.dir = dir;
+        this.snapshotInterval = snapshotInterval;
+        this.mesh = mesh;
+        this.snapshot = snapshot;
+        this.logged = logged;
+        this.log = log;
+    }
+
+    /**
+     * Starts a journal in {@code dir}, creating it if needed, with
+     * {@code mesh} as its first snapshot. Any journal already in
+     * {@code dir} is deleted first.
+     */
+    public static MeshJournal create(Path dir, Mesh mesh, int snapshotInterval)
+            throws IOException {
+        Files.createDirectories(dir);
+        MeshJournal.deleteBefore(dir, Long.MAX_VALUE);
+        MeshJournal journal = new MeshJournal(dir, snapshotInterval, mesh, 0, 0, null);
+        journal.snapshot();
+        return journal;
+    }
+
+    /**
+     * Recovers the mesh of the journal in {@code dir} and continues recording
+     * after its last complete record.
+     */
+    public static MeshJournal open(Path dir, int snapshotInterval) throws IOException {
+        long snapshot = MeshJournal.latestSnapshot(dir);
+        Mesh mesh = MeshBinary.read(MeshJournal.snapshotPath(dir, snapshot));
+        FileChannel log = FileChannel.open(MeshJournal.logPath(dir, snapshot),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MeshEditor editor = mesh.edit();
+        int logged = MeshJournal.replay(log, editor);
+        // drops a record torn by a crash, so that new records follow the last complete one
+        log.truncate(log.position());
+        return new MeshJournal(dir, snapshotInterval, editor.commit(), snapshot, logged, log);
+    }
+
+    /**
+     * @return the mesh of the journal in {@code dir}: its latest snapshot
+     *     with the log after it replayed, up to the last complete record.
+     */
+    public static Mesh recover(Path dir) throws IOException {
+        long snapshot = MeshJournal.latestSnapshot(dir);
+        Mesh mesh = MeshBinary.read(MeshJournal.snapshotPath(dir, snapshot));
+        Path logPath = MeshJournal.logPath(dir, snapshot);
+        if (!Files.exists(logPath)) {
+            return mesh;
+        }
+        try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            MeshEditor editor = mesh.edit();
+            MeshJournal.replay(log, editor);
+            return editor.commit();
+        }
+    }
+
+    public Mesh getMesh() {
+        return this.mesh;
+    }
+
+    public Mesh moveVertex(Vertex v, Point p) throws IOException {
+        Mesh result = this.mesh.moveVertex(v, p);
+        if (result != this.mesh) {
+            this.record.put(MOVE_VERTEX).putInt(v.getId())
+                .putDouble(p.getX()).putDouble(p.getY());
+        }
+        return this.append(result);
+    }
+
+    public Mesh splitEdgeMakeVert(HalfEdge e, Point vertexPoint) throws IOException {
+        Mesh result = this.mesh.splitEdgeMakeVert(e, vertexPoint);
+        if (result != this.mesh) {
+            this.record.put(SPLIT_EDGE_MAKE_VERT).putInt(e.getId())
+                .putDouble(vertexPoint.getX()).putDouble(vertexPoint.getY());
+        }
+        return this.append(result);
+    }
+
+    public Mesh joinEdgeKillVert(Vertex v) throws IOException {
+        Mesh result = this.mesh.joinEdgeKillVert(v);
+        if (result != this.mesh) {
+            this.record.put(JOIN_EDGE_KILL_VERT).putInt(v.getId());
+        }
+        return this.append(result);
+    }
+
+    public Mesh splitFaceMakeEdge(Face face, Vertex vertex1, Vertex vertex2) throws IOException {
+        Mesh result = this.mesh.splitFaceMakeEdge(face, vertex1, vertex2);
+        if (result != this.mesh) {
+            this.record.put(SPLIT_FACE_MAKE_EDGE).putInt(face.getId())
+                .putInt(vertex1.getId()).putInt(vertex2.getId());
+        }
+        return this.append(result);
+    }
+
+    public Mesh joinFaceKillEdge(HalfEdge edge) throws IOException {
+        Mesh result = this.mesh.joinFaceKillEdge(edge);
+        if (result != this.mesh) {
+            this.record.put(JOIN_FACE_KILL_EDGE).putInt(edge.getId());
+        }
+        return this.append(result);
+    }
+
+    /**
+     * Writes the record built by an operator, if it applied, and takes a
+     * snapshot every {@code snapshotInterval} records.
+     */
+    private Mesh append(Mesh result) throws IOException {
+        if (this.record.position() == 0) {
+            return result;
+        }
+        long start = this.log.position();
+        boolean written = false;
+        try {
+            this.record.flip();
+            while (this.record.hasRemaining()) {
+                this.log.write(this.record);
+            }
+            written = true;
+        } finally {
+            this.record.clear();
+            if (!written) {
+                // a partial record would misalign every record appended after it
+                this.log.truncate(start);
+                this.log.position(start);
+            }
+        }
+        this.mesh = result;
+        if (++this.logged >= this.snapshotInterval) {
+            this.snapshot();
+        }
+        return result;
+    }
+
+    /**
+     * Writes the current mesh as a snapshot and starts a new log after it,
+     * then deletes the older snapshots and logs.
+     * The snapshot is written to a temporary file, forced to storage and
+     * moved into place, and the directory is forced before anything older
+     * is deleted, so a crash leaves either the old or the new snapshot complete.
+     */
+    public void snapshot() throws IOException {
+        long snapshot = this.snapshot + this.logged;
+        if (this.log != null) {
+            this.log.force(false);
+        }
+        Path temp = this.dir.resolve("snapshot.tmp");
+        MeshBinary.write(this.mesh, temp, true);
+        Files.move(temp, MeshJournal.snapshotPath(this.dir, snapshot),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel log = FileChannel.open(MeshJournal.logPath(this.dir, snapshot),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        MeshJournal.forceDirectory(this.dir);
+        if (this.log != null) {
+            this.log.close();
+        }
+        this.log = log;
+        this.snapshot = snapshot;
+        this.logged = 0;
+        MeshJournal.deleteBefore(this.dir, snapshot);
+    }
+
+    /**
+     * Forces the entries of {@code dir}, so that a rename or a new file in
+     * it survives an operating system crash. Some platforms, such as
+     * Windows, cannot open a directory; there this does nothing.
+     */
+    private static void forceDirectory(Path dir) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Forces the log to storage.
+     */
+    @Override
+    public void close() throws IOException {
+        this.log.force(false);
+        this.log.close();
+    }
+
+    /**
+     * Applies the complete records of {@code log}, which is read whole since
+     * a snapshot bounds its length, and leaves its position after the last of them.
+     *
+     * @return the number of records applied.
+     */
+    private static int replay(FileChannel log, MeshEditor editor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) log.size()).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining() && log.read(buffer, buffer.position()) > 0) {
+            continue;
+        }
+        buffer.flip();
+        int count = 0;
+        int end = 0;
+        while (buffer.hasRemaining() && MeshJournal.apply(buffer, editor)) {
+            end = buffer.position();
+            ++count;
+        }
+        log.position(end);
+        return count;
+    }
+
+    /**
+     * Applies the record at the position of {@code buffer}, if it is complete.
+     *
+     * An operator code of 0 is read as a torn record, since a log extended
+     * but not written before a crash reads back as zeros.
+     *
+     * @return false, leaving the position unspecified, if the record is incomplete.
+     * @throws IOException if the record is not one written by a journal.
+     */
+    private static boolean apply(ByteBuffer buffer, MeshEditor editor) throws IOException {
+        byte op = buffer.get();
+        switch (op) {
+            case 0:
+                return false;
+            case MOVE_VERTEX:
+                if (buffer.remaining() < Integer.BYTES + 2 * Double.BYTES) {
+                    return false;
+                }
+                editor.moveVertex(buffer.getInt(), buffer.getDouble(), buffer.getDouble());
+                return true;
+            case SPLIT_EDGE_MAKE_VERT:
+                if (buffer.remaining() < Integer.BYTES + 2 * Double.BYTES) {
+                    return false;
+                }
+                editor.splitEdgeMakeVert(buffer.getInt(), buffer.getDouble(), buffer.getDouble());
+                return true;
+            case JOIN_EDGE_KILL_VERT:
+                if (buffer.remaining() < Integer.BYTES) {
+                    return false;
+                }
+                editor.joinEdgeKillVert(buffer.getInt());
+                return true;
+            case SPLIT_FACE_MAKE_EDGE:
+                if (buffer.remaining() < 3 * Integer.BYTES) {
+                    return false;
+                }
+                editor.splitFaceMakeEdge(buffer.getInt(), buffer.getInt(), buffer.getInt());
+                return true;
+            case JOIN_FACE_KILL_EDGE:
+                if (buffer.remaining() < Integer.BYTES) {
+                    return false;
+                }
+                editor.joinFaceKillEdge(buffer.getInt());
+                return true;
+            default:
+                throw new IOException("Unknown journal record " + op);
+        }
+    }
+
+    /**
+     * Deletes the snapshots and logs in {@code dir} numbered below {@code snapshot}.
+     */
+    private static void deleteBefore(Path dir, long snapshot) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Optional<Long> n = MeshJournal.sequence(file, "snapshot-");
+                if (!n.isPresent()) {
+                    n = MeshJournal.sequence(file, "log-");
+                }
+                if (n.isPresent() && n.get() < snapshot) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static long latestSnapshot(Path dir) throws IOException {
+        long latest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "snapshot-*.bin")) {
+            for (Path file : files) {
+                latest = Math.max(latest, MeshJournal.sequence(file, "snapshot-").orElse(-1L));
+            }
+        }
+        if (latest == -1) {
+            throw new IOException("No snapshot in journal " + dir);
+        }
+        return latest;
+    }
+
+    private static Optional<Long> sequence(Path file, String prefix) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(".bin")) {
+            return Optional.<Long>empty();
+        }
+        try {
+            return Optional.<Long>of(Long.parseLong(
+                        name.substring(prefix.length(), name.length() - 4)));
+        } catch (NumberFormatException e) {
+            return Optional.<Long>empty();
+        }
+    }
+
+    private static Path snapshotPath(Path dir, long snapshot) {
+        return dir.resolve("snapshot-" + snapshot + ".bin");
+    }
+
+    private static Path logPath(Path dir, long snapshot) {
+        return dir.resolve("log-" + snapshot + ".bin");
+    }
+}
@@ -0,0 +1,529 @@
+import java.util.Arrays;
+
+/**
+ * An index-based half-edge mesh stored as parallel primitive arrays.
+ * Vertices, faces and half-edges are plain {@code int} handles into
+ * those arrays, and -1 stands for an absent reference, such as the
+ * face of a boundary half-edge.
+ * Unlike {@code Mesh}, the Euler operators inherited from {@code HalfEdgeOps}
+ * modify the kernel in place.
+ * Killed elements leave a dead slot behind so that other handles stay valid.
+ */
+public class MeshKernel extends HalfEdgeOps {
+    static final int DEAD = -2;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] next;
+    private int[] prev;
+    private int[] twin;
+    private int[] edgeVertex;
+    private int[] edgeFace;
+    private int numEdges;
+
+    private double[] xs;
+    private double[] ys;
+    private int[] vertexEdge;
+    private int numVertices;
+
+    private int[] faceEdge;
+    private int numFaces;
+
+    public MeshKernel() {
+        this(INITIAL_CAPACITY, INITIAL_CAPACITY, INITIAL_CAPACITY);
+    }
+
+    private MeshKernel(int vertexCapacity, int faceCapacity, int edgeCapacity) {
+        this.next = new int[edgeCapacity];
+        this.prev = new int[edgeCapacity];
+        this.twin = new int[edgeCapacity];
+        this.edgeVertex = new int[edgeCapacity];
+        this.edgeFace = new int[edgeCapacity];
+        this.xs = new double[vertexCapacity];
+        this.ys = new double[vertexCapacity];
+        this.vertexEdge = new int[vertexCapacity];
+        this.faceEdge = new int[faceCapacity];
+    }
+
+    /**
+     * Wraps arrays holding a complete kernel, as read back by {@code MeshBinary}.
+     * Dead slots are marked with {@code DEAD} in {@code vertexEdge},
+     * {@code faceEdge} and {@code edgeVertex}.
+     */
+    MeshKernel(double[] xs, double[] ys, int[] vertexEdge, int[] faceEdge,
+            int[] edgeVertex, int[] edgeFace, int[] twin, int[] next, int[] prev) {
+        this.xs = xs;
+        this.ys = ys;
+        this.vertexEdge = vertexEdge;
+        this.numVertices = vertexEdge.length;
+        this.faceEdge = faceEdge;
+        this.numFaces = faceEdge.length;
+        this.edgeVertex = edgeVertex;
+        this.edgeFace = edgeFace;
+        this.twin = twin;
+        this.next = next;
+        this.prev = prev;
+        this.numEdges = edgeVertex.length;
+    }
+
+    /**
+     * Constructs a kernel based on the Wavefront OBJ format,
+     * with the same semantics as the {@code Mesh} constructor.
+     *
+     * @param points a {@code List} of {@code Point} for each vertex in the mesh.
+     * @param faces  a {@code List} of a {@code List} of integers for the indices of each vertex in each face.
+     * @throws IllegalArgumentException if a face has fewer than 3 vertices.
+     */
+    public MeshKernel(ImList<? extends Point> points,
+            ImList<? extends ImList<? extends Integer>> faces) {
+        this(Math.max(points.size(), 1), Math.max(faces.size(), 1),
+                Math.max(points.size() * 4, 1));
+        MeshKernel.checkFaceSizes(faces);
+        LongIntMap edgeMap = new LongIntMap(points.size() * 4);
+        for (Point p : points) {
+            this.addVertex(p.getX(), p.getY());
+        }
+        int[] polygon = new int[8];
+        for (ImList<? extends Integer> f : faces) {
+            if (polygon.length < f.size()) {
+                polygon = new int[f.size() * 2];
+            }
+            int len = 0;
+            for (int v : f) {
+                polygon[len++] = v;
+            }
+            this.addPolygon(polygon, len, edgeMap);
+        }
+        this.closeBoundary(edgeMap);
+    }
+
+    /**
+     * Constructs the same kernel as the OBJ constructor, with the same handles,
+     * splitting the work across the common fork-join pool.
+     * Half-edges are created per face in parallel; twins are matched by
+     * sorting the half-edges by origin and searching the out-going half-edges
+     * of each destination; boundary half-edges are numbered by a parallel
+     * prefix sum and linked into loops in parallel.
+     * Inputs that repeat a directed edge are not manifold and
+     * are built sequentially, so that the result stays identical.
+     */
+    public static MeshKernel parallel(ImList<? extends Point> points,
+            ImList<? extends ImList<? extends Integer>> faces) {
+        MeshKernel.checkFaceSizes(faces);
+        int numVertices = points.size();
+        int numFaces = faces.size();
+        double[] xs = new double[numVertices];
+        double[] ys = new double[numVertices];
+        int[] vertexEdge = new int[numVertices];
+        Parallel.forRange(numVertices, (from, to) -> {
+            for (int v = from; v < to; ++v) {
+                Point p = points.get(v);
+                xs[v] = p.getX();
+                ys[v] = p.getY();
+                vertexEdge[v] = -1;
+            }
+        });
+
+        int[] offsets = Parallel.prefixSums(numFaces, f -> faces.get(f).size());
+        int numFaceEdges = offsets[numFaces];
+        int[] faceEdge = new int[numFaces];
+        int[] edgeVertex = new int[numFaceEdges];
+        int[] edgeFace = new int[numFaceEdges];
+        int[] next = new int[numFaceEdges];
+        int[] prev = new int[numFaceEdges];
+        // origin in the high half and half-edge in the low half, to sort by origin
+        long[] byOrigin = new long[numFaceEdges];
+        Parallel.forRange(numFaces, Parallel.GRAIN / 8, (from, to) -> {
+            for (int f = from; f < to; ++f) {
+                ImList<? extends Integer> polygon = faces.get(f);
+                int start = offsets[f];
+                int len = polygon.size();
+                for (int i = 0; i < len; ++i) {
+                    int v = polygon.get(i);
+                    if (v < 0 || v >= numVertices) {
+                        throw new IndexOutOfBoundsException("Vertex index " + v
+                                + " out of bounds for length " + numVertices);
+                    }
+                    int e = start + i;
+                    edgeVertex[e] = v;
+                    edgeFace[e] = f;
+                    next[e] = start + (i + 1) % len;
+                    prev[e] = start + (i - 1 + len) % len;
+                    byOrigin[e] = ((long) v << 32) | e;
+                }
+                faceEdge[f] = start;
+            }
+        });
+        Arrays.parallelSort(byOrigin);
+
+        // the out-going half-edges of v are byOrigin[outStart[v] .. outEnd[v])
+        int[] outStart = new int[numVertices];
+        int[] outEnd = new int[numVertices];
+        Parallel.forRange(numFaceEdges, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                int v = (int) (byOrigin[i] >>> 32);
+                if (i == 0 || (int) (byOrigin[i - 1] >>> 32) != v) {
+                    outStart[v] = i;
+                    vertexEdge[v] = (int) byOrigin[i];
+                }
+                if (i == numFaceEdges - 1 || (int) (byOrigin[i + 1] >>> 32) != v) {
+                    outEnd[v] = i + 1;
+                }
+            }
+        });
+
+        int[] faceTwin = new int[numFaceEdges];
+        boolean[] repeated = new boolean[1];
+        Parallel.forRange(numFaceEdges, (from, to) -> {
+            for (int e = from; e < to; ++e) {
+                int v1 = edgeVertex[e];
+                int v2 = edgeVertex[next[e]];
+                int twin = -1;
+                for (int i = outStart[v2]; i < outEnd[v2]; ++i) {
+                    int t = (int) byOrigin[i];
+                    if (edgeVertex[next[t]] == v1) {
+                        if (twin != -1) {
+                            repeated[0] = true;
+                        }
+                        twin = t;
+                    }
+                }
+                for (int i = outStart[v1]; i < outEnd[v1]; ++i) {
+                    int t = (int) byOrigin[i];
+                    if (t != e && edgeVertex[next[t]] == v2) {
+                        repeated[0] = true;
+                    }
+                }
+                faceTwin[e] = twin;
+            }
+        });
+        if (repeated[0]) {
+            return new MeshKernel(points, faces);
+        }
+
+        int[] boundaryIndex = Parallel.prefixSums(numFaceEdges, e -> faceTwin[e] == -1 ? 1 : 0);
+        int numEdges = numFaceEdges + boundaryIndex[numFaceEdges];
+        int[] allVertex = Arrays.copyOf(edgeVertex, numEdges);
+        int[] allFace = Arrays.copyOf(edgeFace, numEdges);
+        int[] allNext = Arrays.copyOf(next, numEdges);
+        int[] allPrev = Arrays.copyOf(prev, numEdges);
+        int[] twin = Arrays.copyOf(faceTwin, numEdges);
+        Parallel.forRange(numFaceEdges, (from, to) -> {
+            for (int e = from; e < to; ++e) {
+                if (faceTwin[e] == -1) {
+                    int b = numFaceEdges + boundaryIndex[e];
+                    allVertex[b] = edgeVertex[next[e]];
+                    allFace[b] = -1;
+                    allNext[b] = -1;
+                    allPrev[b] = -1;
+                    twin[b] = e;
+                    twin[e] = b;
+                }
+            }
+        });
+        MeshKernel kernel = new MeshKernel(xs, ys, vertexEdge, faceEdge,
+                allVertex, allFace, twin, allNext, allPrev);
+        // each walk reads only face half-edges and writes only its own boundary half-edge
+        // and the next one, so the loops can be linked in any order
+        Parallel.forRange(numEdges - numFaceEdges, (from, to) -> {
+            for (int b = numFaceEdges + from; b < numFaceEdges + to; ++b) {
+                kernel.linkBoundary(b);
+            }
+        });
+        return kernel;
+    }
+
+    /**
+     * Rejects faces that cannot bound a polygon: an empty face would take
+     * the half-edge of the next face as its own, and a two-sided one
+     * leaves no boundary loop to close.
+     */
+    private static void checkFaceSizes(ImList<? extends ImList<? extends Integer>> faces) {
+        int f = 0;
+        for (ImList<? extends Integer> face : faces) {
+            if (face.size() < 3) {
+                throw new IllegalArgumentException("Face " + f + " has fewer than 3 vertices");
+            }
+            ++f;
+        }
+    }
+
+    /**
+     * Adds a face over the first {@code len} vertex ids in {@code polygon},
+     * linking its half-edges to twins already recorded in {@code edgeMap}.
+     * Used to build a kernel one face at a time; {@code closeBoundary}
+     * must be called once all faces are added.
+     */
+    int addPolygon(int[] polygon, int len, LongIntMap edgeMap) {
+        int face = this.addFace();
+        int start = this.numEdges;
+        for (int i = 0; i < len; ++i) {
+            int v1 = polygon[i];
+            int v2 = polygon[i < len - 1 ? i + 1 : 0];
+            int e = this.addHalfEdge(v1, face);
+            this.next[e] = start + (i + 1) % len;
+            this.prev[e] = start + (i - 1 + len) % len;
+            this.linkTwin(edgeMap, e, v1, v2);
+        }
+        this.faceEdge[face] = start;
+        return face;
+    }
+
+    /**
+     * Adds a boundary half-edge for every half-edge without a twin
+     * and links the boundary half-edges into loops.
+     */
+    void closeBoundary(LongIntMap edgeMap) {
+        for (int e = 0, len = this.numEdges; e < len; ++e) {
+            if (this.twin[e] == -1) {
+                int v1 = this.edgeVertex[this.next[e]];
+                int v2 = this.edgeVertex[e];
+                this.linkTwin(edgeMap, this.addHalfEdge(v1, -1), v1, v2);
+            }
+        }
+        this.linkBoundary();
+    }
+
+    private void linkTwin(LongIntMap edgeMap, int e, int v1, int v2) {
+        edgeMap.put(LongIntMap.key(v1, v2), e);
+        if (this.vertexEdge[v1] == -1) {
+            this.vertexEdge[v1] = e;
+        }
+        int t = edgeMap.get(LongIntMap.key(v2, v1));
+        if (t != -1) {
+            this.twin[e] = t;
+            this.twin[t] = e;
+        }
+    }
+
+    private void linkBoundary() {
+        for (int e = 0; e < this.numEdges; ++e) {
+            if (this.edgeFace[e] == -1 && this.twin[e] != -1) {
+                this.linkBoundary(e);
+            }
+        }
+    }
+
+    /**
+     * Links boundary half-edge {@code e} to the boundary half-edge that
+     * leaves its destination, found by rotating through face half-edges.
+     */
+    private void linkBoundary(int e) {
+        int n = this.twin[e];
+        do {
+            if (this.prev[n] != -1) {
+                n = this.twin[this.prev[n]];
+            }
+        } while (this.edgeFace[n] != -1);
+        this.next[e] = n;
+        this.prev[n] = e;
+    }
+
+    /**
+     * Copies the connectivity and geometry of a {@code Mesh} into a new kernel.
+     * Handles are the ids of the elements in the mesh.
+     */
+    public static MeshKernel of(Mesh mesh) {
+        MeshKernel kernel = new MeshKernel(Math.max(mesh.vertexCount(), 1),
+                Math.max(mesh.faceCount(), 1), Math.max(mesh.halfEdgeCount(), 1));
+        for (int v = 0; v < mesh.vertexCount(); ++v) {
+            if (mesh.isLiveVertex(v)) {
+                Point p = mesh.point(v);
+                kernel.addVertex(p.getX(), p.getY());
+                kernel.vertexEdge[v] = mesh.vertexHalfEdge(v);
+            } else {
+                kernel.addVertex(0.0, 0.0);
+                kernel.vertexEdge[v] = DEAD;
+            }
+        }
+        for (int f = 0; f < mesh.faceCount(); ++f) {
+            kernel.addFace();
+            kernel.faceEdge[f] = mesh.isLiveFace(f) ? mesh.faceHalfEdge(f) : DEAD;
+        }
+        for (int e = 0; e < mesh.halfEdgeCount(); ++e) {
+            if (mesh.isLiveHalfEdge(e)) {
+                kernel.addHalfEdge(mesh.vertex(e), mesh.face(e));
+                kernel.next[e] = mesh.next(e);
+                kernel.prev[e] = mesh.prev(e);
+                kernel.twin[e] = mesh.twin(e);
+            } else {
+                kernel.addHalfEdge(DEAD, -1);
+            }
+        }
+        return kernel;
+    }
+
+    /**
+     * Builds a {@code Mesh} whose element ids are the handles of this kernel.
+     */
+    public Mesh toMesh() {
+        Mesh.VertexData[] vertices = new Mesh.VertexData[this.numVertices];
+        Mesh.FaceData[] faces = new Mesh.FaceData[this.numFaces];
+        Mesh.EdgeData[] edges = new Mesh.EdgeData[this.numEdges];
+        Parallel.forRange(this.numVertices, (from, to) -> {
+            for (int v = from; v < to; ++v) {
+                vertices[v] = !this.isLiveVertex(v) ? null
+                    : new Mesh.VertexData(new Point(this.xs[v], this.ys[v]), this.vertexEdge[v]);
+            }
+        });
+        Parallel.forRange(this.numFaces, (from, to) -> {
+            for (int f = from; f < to; ++f) {
+                faces[f] = !this.isLiveFace(f) ? null : new Mesh.FaceData(this.faceEdge[f]);
+            }
+        });
+        Parallel.forRange(this.numEdges, (from, to) -> {
+            for (int e = from; e < to; ++e) {
+                edges[e] = !this.isLiveHalfEdge(e) ? null : new Mesh.EdgeData(this.edgeVertex[e],
+                        this.edgeFace[e], this.twin[e], this.next[e], this.prev[e]);
+            }
+        });
+        return new Mesh(new ImList<Mesh.VertexData>(Arrays.asList(vertices)),
+                new ImList<Mesh.FaceData>(Arrays.asList(faces)),
+                new ImList<Mesh.EdgeData>(Arrays.asList(edges)),
+                FreeSlots.of(this.numVertices, this::isLiveVertex),
+                FreeSlots.of(this.numFaces, this::isLiveFace),
+                FreeSlots.of(this.numEdges, this::isLiveHalfEdge));
+    }
+
+    int addVertex(double x, double y) {
+        if (this.numVertices == this.vertexEdge.length) {
+            int capacity = Math.max(this.numVertices * 2, INITIAL_CAPACITY);
+            this.xs = Arrays.copyOf(this.xs, capacity);
+            this.ys = Arrays.copyOf(this.ys, capacity);
+            this.vertexEdge = Arrays.copyOf(this.vertexEdge, capacity);
+        }
+        int v = this.numVertices++;
+        this.xs[v] = x;
+        this.ys[v] = y;
+        this.vertexEdge[v] = -1;
+        return v;
+    }
+
+    int addFace() {
+        if (this.numFaces == this.faceEdge.length) {
+            this.faceEdge = Arrays.copyOf(this.faceEdge,
+                    Math.max(this.numFaces * 2, INITIAL_CAPACITY));
+        }
+        int f = this.numFaces++;
+        this.faceEdge[f] = -1;
+        return f;
+    }
+
+    int addHalfEdge(int v, int f) {
+        if (this.numEdges == this.next.length) {
+            int capacity = Math.max(this.numEdges * 2, INITIAL_CAPACITY);
+            this.next = Arrays.copyOf(this.next, capacity);
+            this.prev = Arrays.copyOf(this.prev, capacity);
+            this.twin = Arrays.copyOf(this.twin, capacity);
+            this.edgeVertex = Arrays.copyOf(this.edgeVertex, capacity);
+            this.edgeFace = Arrays.copyOf(this.edgeFace, capacity);
+        }
+        int e = this.numEdges++;
+        this.next[e] = -1;
+        this.prev[e] = -1;
+        this.twin[e] = -1;
+        this.edgeVertex[e] = v;
+        this.edgeFace[e] = f;
+        return e;
+    }
+
+    public int vertexCount() {
+        return this.numVertices;
+    }
+
+    public int faceCount() {
+        return this.numFaces;
+    }
+
+    public int halfEdgeCount() {
+        return this.numEdges;
+    }
+
+    public boolean isLiveVertex(int v) {
+        return v >= 0 && v < this.numVertices && this.vertexEdge[v] != DEAD;
+    }
+
+    public boolean isLiveFace(int f) {
+        return f >= 0 && f < this.numFaces && this.faceEdge[f] != DEAD;
+    }
+
+    public boolean isLiveHalfEdge(int e) {
+        return e >= 0 && e < this.numEdges && this.edgeVertex[e] != DEAD;
+    }
+
+    public int next(int e) {
+        return this.next[e];
+    }
+
+    public int prev(int e) {
+        return this.prev[e];
+    }
+
+    public int twin(int e) {
+        return this.twin[e];
+    }
+
+    public int vertex(int e) {
+        return this.edgeVertex[e];
+    }
+
+    public int face(int e) {
+        return this.edgeFace[e];
+    }
+
+    public int vertexHalfEdge(int v) {
+        return this.vertexEdge[v];
+    }
+
+    public int faceHalfEdge(int f) {
+        return this.faceEdge[f];
+    }
+
+    public double x(int v) {
+        return this.xs[v];
+    }
+
+    public double y(int v) {
+        return this.ys[v];
+    }
+
+    void setNext(int e, int next) {
+        this.next[e] = next;
+    }
+
+    void setPrev(int e, int prev) {
+        this.prev[e] = prev;
+    }
+
+    void setTwin(int e, int twin) {
+        this.twin[e] = twin;
+    }
+
+    void setFace(int e, int f) {
+        this.edgeFace[e] = f;
+    }
+
+    void setVertexHalfEdge(int v, int e) {
+        this.vertexEdge[v] = e;
+    }
+
+    void setFaceHalfEdge(int f, int e) {
+        this.faceEdge[f] = e;
+    }
+
+    void setVertexPosition(int v, double x, double y) {
+        this.xs[v] = x;
+        this.ys[v] = y;
+    }
+
+    void killVertex(int v) {
+        this.vertexEdge[v] = DEAD;
+    }
+
+    void killFace(int f) {
+        this.faceEdge[f] = DEAD;
+    }
+
+    void killHalfEdge(int e) {
+        this.edgeVertex[e] = DEAD;
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Arrays;
+
+/**
+ * Renumbers the elements of a mesh so that its storage has no empty slots
+ * and elements close in the mesh are close in memory.
+ * Vertices take the order given, faces follow the first of their vertices
+ * in that order, and the half-edges of each face are numbered consecutively
+ * around it, in face order, followed by the boundary half-edges in the
+ * order of their vertices. Records and points are allocated afresh in the
+ * new order, so that they are also laid out in it on the heap.
+ */
+class MeshLayout {
+    // bits per coordinate of the Hilbert curve, kept below 16 so that the
+    // curve index shifted into the high half of a sort key stays positive
+    private static final int ORDER = 15;
+
+    private MeshLayout() {
+    }
+
+    /**
+     * @return the live vertices of {@code m} in id order.
+     */
+    static int[] idOrder(Mesh m) {
+        int[] order = new int[m.vertexCount()];
+        int n = 0;
+        for (int v = 0; v < m.vertexCount(); ++v) {
+            if (m.isLiveVertex(v)) {
+                order[n++] = v;
+            }
+        }
+        return Arrays.copyOf(order, n);
+    }
+
+    /**
+     * @return the live vertices of {@code m} along a Hilbert curve over
+     *     their bounding box, ties broken by id.
+     */
+    static int[] hilbertOrder(Mesh m) {
+        int[] ids = MeshLayout.idOrder(m);
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int v : ids) {
+            Point p = m.point(v);
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+        }
+        double cells = (1 << ORDER) - 1;
+        double scaleX = maxX > minX ? cells / (maxX - minX) : 0.0;
+        double scaleY = maxY > minY ? cells / (maxY - minY) : 0.0;
+        double x0 = minX;
+        double y0 = minY;
+        long[] keys = new long[ids.length];
+        Parallel.forRange(ids.length, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                Point p = m.point(ids[i]);
+                int x = (int) Math.max(0.0, Math.min(cells, (p.getX() - x0) * scaleX));
+                int y = (int) Math.max(0.0, Math.min(cells, (p.getY() - y0) * scaleY));
+                keys[i] = (MeshLayout.hilbertIndex(x, y) << 32) | ids[i];
+            }
+        });
+        Arrays.parallelSort(keys);
+        int[] order = new int[ids.length];
+        for (int i = 0; i < keys.length; ++i) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * @return the distance of cell (x, y) along the Hilbert curve
+     *     filling a square of 2^ORDER cells a side.
+     */
+    static long hilbertIndex(int x, int y) {
+        long d = 0;
+        for (int s = 1 << (ORDER - 1); s > 0; s >>>= 1) {
+            int rx = (x & s) != 0 ? 1 : 0;
+            int ry = (y & s) != 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * @param order every live vertex of {@code m} once, in their new order.
+     */
+    static Mesh renumber(Mesh m, int[] order) {
+        int[] vertexIds = MeshLayout.filled(m.vertexCount());
+        for (int i = 0; i < order.length; ++i) {
+            vertexIds[order[i]] = i;
+        }
+
+        // faces by the lowest new id of their vertices
+        long[] faceKeys = new long[m.faceCount()];
+        Parallel.forRange(faceKeys.length, (from, to) -> {
+            for (int f = from; f < to; ++f) {
+                faceKeys[f] = Long.MAX_VALUE;
+                if (!m.isLiveFace(f)) {
+                    continue;
+                }
+                int first = Integer.MAX_VALUE;
+                int start = m.faceHalfEdge(f);
+                if (start != -1) {
+                    int e = start;
+                    do {
+                        first = Math.min(first, vertexIds[m.vertex(e)]);
+                        e = m.next(e);
+                    } while (e != start);
+                }
+                faceKeys[f] = ((long) first << 32) | f;
+            }
+        });
+        Arrays.parallelSort(faceKeys);
+        int numFaces = 0;
+        while (numFaces < faceKeys.length && faceKeys[numFaces] != Long.MAX_VALUE) {
+            ++numFaces;
+        }
+        int[] faceIds = MeshLayout.filled(m.faceCount());
+        int[] faceOrder = new int[numFaces];
+        for (int i = 0; i < numFaces; ++i) {
+            faceOrder[i] = (int) faceKeys[i];
+            faceIds[faceOrder[i]] = i;
+        }
+
+        // half-edges around each face in face order, then the rest by vertex
+        int[] edgeIds = MeshLayout.filled(m.halfEdgeCount());
+        int[] edgeOrder = new int[m.halfEdgeCount()];
+        int[] numEdges = { 0 };
+        for (int f : faceOrder) {
+            m.forEachFaceHalfEdge(f, e -> {
+                edgeIds[e] = numEdges[0];
+                edgeOrder[numEdges[0]++] = e;
+            });
+        }
+        long[] restKeys = new long[m.halfEdgeCount()];
+        int numRest = 0;
+        for (int e = 0; e < m.halfEdgeCount(); ++e) {
+            if (m.isLiveHalfEdge(e) && edgeIds[e] == -1) {
+                int v = m.vertex(e);
+                restKeys[numRest++] = ((long) (v == -1 ? Integer.MAX_VALUE : vertexIds[v]) << 32) | e;
+            }
+        }
+        restKeys = Arrays.copyOf(restKeys, numRest);
+        Arrays.parallelSort(restKeys);
+        for (long key : restKeys) {
+            int e = (int) key;
+            edgeIds[e] = numEdges[0];
+            edgeOrder[numEdges[0]++] = e;
+        }
+
+        Mesh.VertexData[] vertices = new Mesh.VertexData[order.length];
+        Mesh.FaceData[] faces = new Mesh.FaceData[numFaces];
+        Mesh.EdgeData[] edges = new Mesh.EdgeData[numEdges[0]];
+        Parallel.forRange(vertices.length, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                Point p = m.point(order[i]);
+                vertices[i] = new Mesh.VertexData(new Point(p.getX(), p.getY()),
+                        MeshLayout.map(edgeIds, m.vertexHalfEdge(order[i])));
+            }
+        });
+        Parallel.forRange(faces.length, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                faces[i] = new Mesh.FaceData(MeshLayout.map(edgeIds, m.faceHalfEdge(faceOrder[i])));
+            }
+        });
+        Parallel.forRange(edges.length, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                int e = edgeOrder[i];
+                edges[i] = new Mesh.EdgeData(MeshLayout.map(vertexIds, m.vertex(e)),
+                        MeshLayout.map(faceIds, m.face(e)), MeshLayout.map(edgeIds, m.twin(e)),
+                        MeshLayout.map(edgeIds, m.next(e)), MeshLayout.map(edgeIds, m.prev(e)));
+            }
+        });
+        return new Mesh(new ImList<Mesh.VertexData>(Arrays.asList(vertices)),
+                new ImList<Mesh.FaceData>(Arrays.asList(faces)),
+                new ImList<Mesh.EdgeData>(Arrays.asList(edges)));
+    }
+
+    private static int[] filled(int n) {
+        int[] ids = new int[n];
+        Arrays.fill(ids, -1);
+        return ids;
+    }
+
+    private static int map(int[] ids, int id) {
+        return id == -1 ? -1 : ids[id];
+    }
+}
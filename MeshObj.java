@@ -0,0 +1,302 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Streams a {@code Mesh} to and from Wavefront OBJ.
+ * Only {@code v} and {@code f} statements are read; the z coordinate,
+ * texture and normal indices and all other statements are ignored.
+ * Faces are built into the mesh as they are read, so apart from the mesh
+ * itself memory use does not grow with the size of the file.
+ */
+public class MeshObj {
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    private MeshObj() {
+    }
+
+    public static Mesh read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads an OBJ stream into a mesh, checked if validation is set to {@code FULL}.
+     *
+     * @throws IOException if the stream cannot be read or is not valid OBJ.
+     */
+    public static Mesh read(InputStream in) throws IOException {
+        Parser parser = new Parser(in);
+        MeshKernel kernel = new MeshKernel();
+        LongIntMap edgeMap = new LongIntMap(16);
+        int[] polygon = new int[8];
+        while (parser.nextLine()) {
+            if (!parser.nextToken()) {
+                continue;
+            }
+            if (parser.tokenIs("v")) {
+                double x = parser.nextDouble();
+                double y = parser.nextDouble();
+                kernel.addVertex(x, y);
+            } else if (parser.tokenIs("f")) {
+                int len = 0;
+                while (parser.nextToken()) {
+                    int index = parser.tokenIndex();
+                    int v = index > 0 ? index - 1 : kernel.vertexCount() + index;
+                    if (index == 0 || v < 0 || v >= kernel.vertexCount()) {
+                        throw parser.error("Vertex index " + index + " out of range");
+                    }
+                    if (len == polygon.length) {
+                        polygon = Arrays.copyOf(polygon, len * 2);
+                    }
+                    polygon[len++] = v;
+                }
+                if (len < 3) {
+                    throw parser.error("Face with fewer than 3 vertices");
+                }
+                kernel.addPolygon(polygon, len, edgeMap);
+            }
+        }
+        kernel.closeBoundary(edgeMap);
+        Mesh mesh = kernel.toMesh();
+        if (Mesh.getValidation() == Validation.FULL) {
+            mesh.check();
+        }
+        return mesh;
+    }
+
+    public static void write(Mesh mesh, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(mesh, out);
+        }
+    }
+
+    /**
+     * Writes the live vertices and faces of a mesh as OBJ, with z set to 0.
+     * Vertices are numbered in id order, skipping killed ones.
+     * The stream is flushed but not closed.
+     */
+    public static void write(Mesh mesh, OutputStream out) throws IOException {
+        AsciiWriter writer = new AsciiWriter(out);
+        int[] index = new int[mesh.vertexCount()];
+        int count = 0;
+        for (int v = 0; v < mesh.vertexCount(); ++v) {
+            if (mesh.isLiveVertex(v)) {
+                index[v] = ++count;
+                Point p = mesh.point(v);
+                writer.write("v ").writeDouble(p.getX())
+                    .write(' ').writeDouble(p.getY()).write(" 0\n");
+            }
+        }
+        for (int f = 0; f < mesh.faceCount(); ++f) {
+            if (!mesh.isLiveFace(f) || mesh.faceHalfEdge(f) == -1) {
+                continue;
+            }
+            writer.write('f');
+            int start = mesh.faceHalfEdge(f);
+            int curr = start;
+            do {
+                writer.write(' ').writeLong(index[mesh.vertex(curr)]);
+                curr = mesh.next(curr);
+            } while (curr != start);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Splits a byte stream into lines and whitespace-separated tokens,
+     * reusing one buffer for the stream and one for the current token.
+     */
+    private static final class Parser {
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+        private int limit;
+        private byte[] token = new byte[64];
+        private int tokenLength;
+        private boolean endOfLine = true;
+        private long line;
+
+        Parser(InputStream in) {
+            this.in = in;
+        }
+
+        private int peek() throws IOException {
+            if (this.position == this.limit) {
+                this.limit = this.in.read(this.buffer);
+                this.position = 0;
+                if (this.limit <= 0) {
+                    this.limit = 0;
+                    return -1;
+                }
+            }
+            return this.buffer[this.position];
+        }
+
+        /**
+         * Skips the rest of the current line.
+         *
+         * @return false at the end of the stream.
+         */
+        boolean nextLine() throws IOException {
+            while (!this.endOfLine) {
+                int c = this.peek();
+                if (c == -1) {
+                    return false;
+                }
+                ++this.position;
+                if (c == '\n') {
+                    this.endOfLine = true;
+                }
+            }
+            if (this.peek() == -1) {
+                return false;
+            }
+            this.endOfLine = false;
+            ++this.line;
+            return true;
+        }
+
+        /**
+         * Reads the next token of the current line. A {@code #} starts a comment.
+         *
+         * @return false if the line has no more tokens.
+         */
+        boolean nextToken() throws IOException {
+            if (this.endOfLine) {
+                return false;
+            }
+            int c = this.peek();
+            while (c == ' ' || c == '\t' || c == '\r') {
+                ++this.position;
+                c = this.peek();
+            }
+            if (c == -1 || c == '\n' || c == '#') {
+                return false;
+            }
+            this.tokenLength = 0;
+            while (c != -1 && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                if (this.tokenLength == this.token.length) {
+                    this.token = Arrays.copyOf(this.token, this.tokenLength * 2);
+                }
+                this.token[this.tokenLength++] = (byte) c;
+                ++this.position;
+                c = this.peek();
+            }
+            return true;
+        }
+
+        boolean tokenIs(String s) {
+            if (this.tokenLength != s.length()) {
+                return false;
+            }
+            for (int i = 0; i < this.tokenLength; ++i) {
+                if (this.token[i] != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double nextDouble() throws IOException {
+            if (!this.nextToken()) {
+                throw this.error("Missing coordinate");
+            }
+            return this.tokenDouble();
+        }
+
+        /**
+         * Parses the token exactly when its digits fit in a double and the
+         * power of ten is exact, and through {@code Double.parseDouble} otherwise.
+         */
+        private double tokenDouble() throws IOException {
+            int i = 0;
+            boolean negative = false;
+            if (i < this.tokenLength && (this.token[i] == '-' || this.token[i] == '+')) {
+                negative = this.token[i++] == '-';
+            }
+            long mantissa = 0;
+            int exponent = 0;
+            int digits = 0;
+            boolean exact = true;
+            for (boolean fraction = false; i < this.tokenLength; ++i) {
+                byte c = this.token[i];
+                if (c >= '0' && c <= '9') {
+                    if (mantissa < (1L << 53) / 10) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        exponent -= fraction ? 1 : 0;
+                    } else {
+                        exact = false;
+                    }
+                    ++digits;
+                } else if (c == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+            }
+            if (i < this.tokenLength && (this.token[i] == 'e' || this.token[i] == 'E')) {
+                ++i;
+                boolean negativeExponent = false;
+                if (i < this.tokenLength && (this.token[i] == '-' || this.token[i] == '+')) {
+                    negativeExponent = this.token[i++] == '-';
+                }
+                int e = 0;
+                int start = i;
+                while (i < this.tokenLength && this.token[i] >= '0' && this.token[i] <= '9'
+                        && e < 1000) {
+                    e = e * 10 + (this.token[i++] - '0');
+                }
+                exact &= i > start;
+                exponent += negativeExponent ? -e : e;
+            }
+            if (!exact || digits == 0 || i != this.tokenLength || Math.abs(exponent) > 22) {
+                try {
+                    return Double.parseDouble(
+                            new String(this.token, 0, this.tokenLength, StandardCharsets.US_ASCII));
+                } catch (NumberFormatException e) {
+                    throw this.error("Invalid number");
+                }
+            }
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+                : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parses the vertex part of a face token such as {@code 3}, {@code 3/1}
+         * or {@code -2//5}.
+         */
+        int tokenIndex() throws IOException {
+            int i = 0;
+            boolean negative = this.token[0] == '-';
+            if (negative || this.token[0] == '+') {
+                ++i;
+            }
+            int start = i;
+            long value = 0;
+            while (i < this.tokenLength && this.token[i] >= '0' && this.token[i] <= '9'
+                    && value <= Integer.MAX_VALUE) {
+                value = value * 10 + (this.token[i++] - '0');
+            }
+            if (i == start || value > Integer.MAX_VALUE ||
+                    (i < this.tokenLength && this.token[i] != '/')) {
+                throw this.error("Invalid vertex index");
+            }
+            return (int) (negative ? -value : value);
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " on line " + this.line);
+        }
+    }
+}
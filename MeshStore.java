@@ -0,0 +1,61 @@
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Publishes the current version of a mesh to concurrent readers.
+ * Meshes are immutable, so a reader that takes the current mesh with
+ * {@code get} has a consistent snapshot for as long as it holds it, however
+ * many versions are published meanwhile, and reading takes one volatile load.
+ * A writer builds the next version on the side, typically with a
+ * {@code MeshEditor}, and publishes it with a single atomic store, so it
+ * never waits on readers and readers never see a half-applied edit.
+ */
+public class MeshStore {
+    private final AtomicReference<Mesh> current;
+
+    public MeshStore(Mesh initial) {
+        this.current = new AtomicReference<Mesh>(initial);
+    }
+
+    /**
+     * @return the mesh last published. Wait-free.
+     */
+    public Mesh get() {
+        return this.current.get();
+    }
+
+    /**
+     * Publishes {@code next} unconditionally, for a single writer that
+     * always derives it from the mesh it last published.
+     */
+    public void publish(Mesh next) {
+        this.current.set(next);
+    }
+
+    /**
+     * Publishes {@code next} only if {@code expected} is still current.
+     *
+     * @return false if another version was published since.
+     */
+    public boolean publish(Mesh expected, Mesh next) {
+        return this.current.compareAndSet(expected, next);
+    }
+
+    /**
+     * Publishes {@code edit} applied to the current mesh, reapplying it to
+     * the newer mesh if another writer published first. With a single
+     * writer {@code edit} runs once; with several it may run again, so it
+     * should have no side effects.
+     *
+     * @return the mesh published.
+     */
+    public Mesh update(UnaryOperator<Mesh> edit) {
+        while (true) {
+            Mesh expected = this.current.get();
+            Mesh next = edit.apply(expected);
+            if (next == expected || this.current.compareAndSet(expected, next)) {
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Fork-join helpers over index ranges, run on the common pool.
+ */
+class Parallel {
+    // ranges smaller than this are run on the calling thread
+    static final int GRAIN = 1 << 13;
+
+    interface RangeAction {
+        void apply(int from, int to);
+    }
+
+    private Parallel() {
+    }
+
+    static void forRange(int n, RangeAction action) {
+        Parallel.forRange(n, GRAIN, action);
+    }
+
+    /**
+     * Runs {@code action} over disjoint subranges covering [0, n),
+     * splitting in halves down to {@code grain} indices.
+     */
+    static void forRange(int n, int grain, RangeAction action) {
+        if (n <= grain) {
+            action.apply(0, n);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new RangeTask(0, n, grain, action));
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final RangeAction action;
+
+        RangeTask(int from, int to, int grain, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.grain) {
+                this.action.apply(this.from, this.to);
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(new RangeTask(this.from, mid, this.grain, this.action),
+                    new RangeTask(mid, this.to, this.grain, this.action));
+        }
+    }
+
+    /**
+     * Counts are computed once each, in parallel, then summed per chunk
+     * of {@code GRAIN} indices before the chunks are offset in parallel.
+     *
+     * @return an array of {@code n + 1} running totals, where element i is
+     *     the sum of {@code count} over [0, i).
+     */
+    static int[] prefixSums(int n, IntUnaryOperator count) {
+        int[] sums = new int[n + 1];
+        Parallel.forRange(n, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                sums[i + 1] = count.applyAsInt(i);
+            }
+        });
+        int chunks = (n + GRAIN - 1) / GRAIN;
+        int[] chunkBase = new int[chunks + 1];
+        Parallel.forRange(chunks, 1, (from, to) -> {
+            for (int c = from; c < to; ++c) {
+                int total = 0;
+                for (int i = c * GRAIN, end = Math.min(i + GRAIN, n); i < end; ++i) {
+                    total += sums[i + 1];
+                }
+                chunkBase[c + 1] = total;
+            }
+        });
+        for (int c = 0; c < chunks; ++c) {
+            chunkBase[c + 1] += chunkBase[c];
+        }
+        Parallel.forRange(chunks, 1, (from, to) -> {
+            for (int c = from; c < to; ++c) {
+                int total = chunkBase[c];
+                for (int i = c * GRAIN, end = Math.min(i + GRAIN, n); i < end; ++i) {
+                    total += sums[i + 1];
+                    sums[i + 1] = total;
+                }
+            }
+        });
+        return sums;
+    }
+}
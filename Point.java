@@ -44,11 +44,7 @@ public class Point {
      * the origin to the point in radians.
      */
     public double angle() {
-        double angle = Math.atan2(this.y, this.x);
-        if (angle < 0) {
-            angle += 2 * Math.PI;
-        }
-        return angle;
+        return Geometry.angle(this.x, this.y);
     }
 
     public double angleBetween(Point other) {
@@ -56,12 +52,11 @@ public class Point {
     }
 
     public double distanceBetween(Point other) {
-        return Math.sqrt(Math.pow(other.y - this.y, 2) +
-                Math.pow(other.x - this.x, 2));
+        return Geometry.distance(this.x, this.y, other.x, other.y);
     }
 
     public double distanceFromOrigin() {
-        return distanceBetween(new Point(0.0 ,0.0));
+        return Geometry.length(this.x, this.y);
     }
 
     public Point midpoint(Point other) {
@@ -69,8 +64,7 @@ public class Point {
     }
 
     public Point lerp(Point other, double ratio) {
-        double diffX = other.x - this.x;
-        double diffY = other.y - this.y;
-        return new Point(ratio * diffX + this.x, ratio * diffY + this.y);
+        return new Point(Geometry.lerp(this.x, other.x, ratio),
+                Geometry.lerp(this.y, other.y, ratio));
     }
 }
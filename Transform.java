@@ -0,0 +1,115 @@
+/**
+ * An immutable 2D affine transform, mapping (x, y) to
+ * (a x + b y + tx, c x + d y + ty).
+ * Applied in bulk by {@code Mesh.transform} over packed coordinate arrays.
+ */
+public final class Transform {
+    private static final Transform IDENTITY = new Transform(1.0, 0.0, 0.0, 1.0, 0.0, 0.0);
+
+    private final double a;
+    private final double b;
+    private final double c;
+    private final double d;
+    private final double tx;
+    private final double ty;
+
+    private Transform(double a, double b, double c, double d, double tx, double ty) {
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.d = d;
+        this.tx = tx;
+        this.ty = ty;
+    }
+
+    public static Transform identity() {
+        return IDENTITY;
+    }
+
+    public static Transform affine(double a, double b, double c, double d,
+            double tx, double ty) {
+        return new Transform(a, b, c, d, tx, ty);
+    }
+
+    public static Transform translation(double dx, double dy) {
+        return new Transform(1.0, 0.0, 0.0, 1.0, dx, dy);
+    }
+
+    /**
+     * Rotates counterclockwise by {@code angle} radians about the origin.
+     */
+    public static Transform rotation(double angle) {
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        return new Transform(cos, -sin, sin, cos, 0.0, 0.0);
+    }
+
+    /**
+     * Rotates counterclockwise by {@code angle} radians about {@code centre}.
+     */
+    public static Transform rotation(double angle, Point centre) {
+        return Transform.about(Transform.rotation(angle), centre);
+    }
+
+    public static Transform scaling(double sx, double sy) {
+        return new Transform(sx, 0.0, 0.0, sy, 0.0, 0.0);
+    }
+
+    /**
+     * Scales about {@code centre}, which stays fixed.
+     */
+    public static Transform scaling(double sx, double sy, Point centre) {
+        return Transform.about(Transform.scaling(sx, sy), centre);
+    }
+
+    private static Transform about(Transform t, Point centre) {
+        return Transform.translation(-centre.getX(), -centre.getY())
+            .then(t)
+            .then(Transform.translation(centre.getX(), centre.getY()));
+    }
+
+    /**
+     * @return the transform that applies this one, then {@code next}.
+     */
+    public Transform then(Transform next) {
+        return new Transform(
+                next.a * this.a + next.b * this.c,
+                next.a * this.b + next.b * this.d,
+                next.c * this.a + next.d * this.c,
+                next.c * this.b + next.d * this.d,
+                next.a * this.tx + next.b * this.ty + next.tx,
+                next.c * this.tx + next.d * this.ty + next.ty);
+    }
+
+    public Point apply(Point p) {
+        double x = p.getX();
+        double y = p.getY();
+        return new Point(this.a * x + this.b * y + this.tx, this.c * x + this.d * y + this.ty);
+    }
+
+    /**
+     * Transforms the points (xs[i], ys[i]) for i in [from, to) in place.
+     * This is a plain scalar loop; whether the JIT vectorizes it is up to
+     * the JVM and is not relied on.
+     */
+    void apply(double[] xs, double[] ys, int from, int to) {
+        double a = this.a;
+        double b = this.b;
+        double c = this.c;
+        double d = this.d;
+        double tx = this.tx;
+        double ty = this.ty;
+        for (int i = from; i < to; ++i) {
+            double x = xs[i];
+            double y = ys[i];
+            xs[i] = a * x + b * y + tx;
+            ys[i] = c * x + d * y + ty;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Transform(%f, %f, %f, %f, %f, %f)",
+                this.a, this.b, this.c, this.d, this.tx, this.ty);
+    }
+}
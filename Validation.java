@@ -0,0 +1,31 @@
+import java.util.Locale;
+
+/**
+ * How much of a mesh is checked when a batch of Euler operators is committed.
+ * The default is read from the {@code mesh.validation} system property,
+ * e.g. {@code -Dmesh.validation=incremental}, and is {@code FULL} if unset
+ * or not one of the modes.
+ */
+public enum Validation {
+    /** No checks. */
+    OFF,
+    /** Checks only the elements an operator touched and their neighbours. */
+    INCREMENTAL,
+    /** Checks every element, as {@code Mesh.check} does. */
+    FULL;
+
+    static Validation fromProperty() {
+        String value = System.getProperty("mesh.validation");
+        if (value == null) {
+            return FULL;
+        }
+        try {
+            return Validation.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            // throwing here would fail the static initialiser of Mesh
+            System.err.println("Unknown mesh.validation '" + value
+                    + "', expected off, incremental or full; using full");
+            return FULL;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Every violation found by {@code Mesh.validate}, ordered by kind and then
+ * by the id of the element it was found at.
+ */
+public class ValidationReport {
+    /**
+     * The invariants checked by {@code validate}. The topological kinds are
+     * the ones {@code check} throws on, with the same messages.
+     */
+    public enum Kind {
+        TWIN("edge: twin inconsistent"),
+        NEXT_FACE("edge: next face inconsistent"),
+        PREV_FACE("edge: prev face inconsistent"),
+        NEXT("edge: next inconsistent"),
+        PREV("edge: prev inconsistent"),
+        VERTEX_EDGE("vertex: edge inconsistent"),
+        FACE_EDGE("face: edge inconsistent"),
+        DEGENERATE_EDGE("edge: zero length"),
+        INVERTED_FACE("face: orientation inconsistent");
+
+        private final String message;
+
+        Kind(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return this.message;
+        }
+    }
+
+    /**
+     * One broken invariant at element {@code id}: a half-edge, vertex or face
+     * id depending on the kind. {@code related} is the id of the other element
+     * the invariant involves, or -1.
+     */
+    public static final class Violation {
+        private final Kind kind;
+        private final int id;
+        private final int related;
+
+        Violation(Kind kind, int id, int related) {
+            this.kind = kind;
+            this.id = id;
+            this.related = related;
+        }
+
+        public Kind getKind() {
+            return this.kind;
+        }
+
+        public int getId() {
+            return this.id;
+        }
+
+        public int getRelated() {
+            return this.related;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s at %d (related %d)", this.kind.getMessage(),
+                    this.id, this.related);
+        }
+    }
+
+    private final ImList<Violation> violations;
+
+    ValidationReport(List<Violation> violations) {
+        List<Violation> sorted = new ArrayList<Violation>(violations);
+        sorted.sort(Comparator.comparing(Violation::getKind)
+                .thenComparingInt(Violation::getId)
+                .thenComparingInt(Violation::getRelated));
+        this.violations = new ImList<Violation>(sorted);
+    }
+
+    public boolean isValid() {
+        return this.violations.isEmpty();
+    }
+
+    public ImList<Violation> getViolations() {
+        return this.violations;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        for (Violation v : this.violations) {
+            output.append(v).append('\n');
+        }
+        return output.toString();
+    }
+}
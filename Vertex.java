@@ -1,90 +1,93 @@
 import java.util.Optional;
 
+/**
+ * A view of the vertex with the given id in one particular {@code Mesh}.
+ */
 public class Vertex {
+    private final Mesh mesh;
     private final int id;
-    private final Point p;
-    private Optional<HalfEdge> halfedge;
+    private final int generation;
 
-    Vertex(int id, Point p) {
-        this(id, p, Optional.<HalfEdge>empty());
-    }
-
-    private Vertex(int id, Point p, Optional<HalfEdge> halfedge) {
+    Vertex(Mesh mesh, int id) {
+        this.mesh = mesh;
         this.id = id;
-        this.p = p;
-        this.halfedge = halfedge;
-    }
-
-    void setHalfEdge(HalfEdge halfedge) {
-        this.halfedge = Optional.<HalfEdge>of(halfedge);
-    }
-
-    Vertex copy() {
-        return new Vertex(this.id, this.p, this.halfedge);
-    }
-
-    Vertex move(Point p) {
-        return new Vertex(this.id, p, this.halfedge); 
+        this.generation = mesh.vertexGeneration(id);
     }
 
     int getId() {
         return this.id;
     }
 
+    /**
+     * The generation of the slot this vertex is stored in. A mesh derived
+     * from this one may reuse the slot of a killed vertex for a new one,
+     * at a later generation; {@code Mesh.isLive} tells them apart.
+     */
+    int getGeneration() {
+        return this.generation;
+    }
+
     public Point getPoint() {
-        return this.p;
+        return this.mesh.point(this.id);
     }
 
     public Optional<HalfEdge> getHalfEdge() {
-        return this.halfedge;
+        int e = this.mesh.vertexHalfEdge(this.id);
+        if (e == -1) {
+            return Optional.<HalfEdge>empty();
+        }
+        return Optional.<HalfEdge>of(new HalfEdge(this.mesh, e));
     }
 
     public double getX() {
-        return this.p.getX();
+        return this.getPoint().getX();
     }
 
     public double getY() {
-        return this.p.getY();
-    }
-
-    Vertex translateCoords(double x, double y) {
-        return new Vertex(this.id,
-                this.p.translateCoords(x, y), this.halfedge);
-    }
-
-    Vertex translateAngle(double angle, double dist) {
-        return new Vertex(this.id,
-                this.p.translateAngle(angle, dist), this.halfedge);
+        return this.getPoint().getY();
     }
 
     public double angle() {
-        return this.p.angle();
+        return this.getPoint().angle();
     }
 
     public double angleBetween(Vertex other) {
-        return this.p.angleBetween(other.p);
+        return this.getPoint().angleBetween(other.getPoint());
     }
 
     public double distanceBetween(Vertex other) {
-        return this.p.distanceBetween(other.p);
+        return this.getPoint().distanceBetween(other.getPoint());
     }
 
     public double distanceFromOrigin() {
-        return this.p.distanceFromOrigin();
+        return this.getPoint().distanceFromOrigin();
     }
 
     public Point midpoint(Vertex other) {
-        return this.p.midpoint(other.p);
+        return this.getPoint().midpoint(other.getPoint());
     }
 
     public Point lerp(Vertex other, double ratio) {
-        return this.p.lerp(other.p, ratio);
+        return this.getPoint().lerp(other.getPoint(), ratio);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Vertex)) {
+            return false;
+        }
+        Vertex other = (Vertex) obj;
+        return this.mesh == other.mesh && this.id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.id;
     }
 
     @Override
     public String toString() {
-        HalfEdge edge = new HalfEdge(-1);
-        return String.format("Vertex %d: %s, Edge %d", this.id, this.p.toString(),
-                this.halfedge.orElse(edge).getId());
+        return String.format("Vertex %d: %s, Edge %d", this.id, this.getPoint().toString(),
+                this.mesh.vertexHalfEdge(this.id));
     }
 }
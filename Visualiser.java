@@ -1,35 +1,77 @@
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Scanner;
 import java.io.FileNotFoundException;
 
 class Visualiser {
+    private static final DeltaExporter DELTA = new DeltaExporter(Paths.get("mesh.delta"));
+
     public static void visualise(Mesh m) {
-        m.check();
-        String output = "";
-        ImList<Face> faces = m.getFaces();
-        for (Face f : faces) {
-            HalfEdge start = f.getHalfEdge().get();
-            HalfEdge curr = start;
-            do {
-                Point p = curr.getVertex().get().getPoint();
-                output += p.getX() + "," + p.getY() + " ";
-                curr = curr.getNext().get();
-            } while (!start.equals(curr));
-            output += "\n";
-        }        
+        if (Mesh.getValidation() == Validation.FULL) {
+            m.check();
+        }
+        try (AsciiWriter writer = new AsciiWriter(
+                Files.newOutputStream(Paths.get("mesh.out")))) {
+            Visualiser.write(m, writer);
+        } catch (IOException e) {
+            System.out.println("Error! Could not write output");
+        }
+    }
+
+    /**
+     * Writes one line per face, listing its vertices as {@code x,y }
+     * in {@code next} order.
+     */
+    static void write(Mesh m, AsciiWriter writer) throws IOException {
+        for (int f = 0; f < m.faceCount(); ++f) {
+            if (m.isLiveFace(f) && m.faceHalfEdge(f) != -1) {
+                Visualiser.writeFace(m, f, writer);
+                writer.write('\n');
+            }
+        }
+    }
+
+    static void writeFace(Mesh m, int f, AsciiWriter writer) throws IOException {
+        int start = m.faceHalfEdge(f);
+        int curr = start;
+        do {
+            Point p = m.point(m.vertex(curr));
+            writer.writeDouble(p.getX()).write(',').writeDouble(p.getY()).write(' ');
+            curr = m.next(curr);
+        } while (start != curr);
+    }
+
+    /**
+     * Appends the faces changed since the last call to {@code mesh.delta};
+     * see {@code DeltaExporter}.
+     */
+    public static void visualiseDelta(Mesh m) {
+        if (Mesh.getValidation() == Validation.FULL) {
+            m.check();
+        }
         try {
-            File file = new File("mesh.out");
-            FileWriter fileWriter = new FileWriter(file);
-            file.createNewFile();
-            fileWriter.write(output);
-            fileWriter.close();
+            DELTA.export(m);
         } catch (IOException e) {
             System.out.println("Error! Could not write output");
         }
     }
 
+    /**
+     * Folds {@code mesh.delta} into a full {@code mesh.out}, then makes the
+     * next {@code visualiseDelta} start a fresh log, so the log does not
+     * grow for the lifetime of the program.
+     */
+    public static void compact() {
+        try {
+            DeltaExporter.compact(Paths.get("mesh.delta"), Paths.get("mesh.out"));
+            DELTA.reset();
+        } catch (IOException e) {
+            System.out.println("Error! Could not compact output");
+        }
+    }
+
     public static Mesh create() {
         ImList<Point> points = new ImList<Point>();
         try {